@@ -1,9 +1,9 @@
 package application;
 
 import java.io.File;
-import java.util.concurrent.TimeoutException;
 import java.util.function.Consumer;
 import imageprocessing.ConnectedComponentImage;
+import imageprocessing.ProcessingTimeoutException;
 import javafx.beans.value.ChangeListener;
 import javafx.beans.value.ObservableValue;
 import javafx.event.ActionEvent;
@@ -104,9 +104,9 @@ public class LandingController {
 					processor = new ConnectedComponentImage(file.getAbsolutePath(),
 							choice == 0 ? 0 : 1);
 					dimension.setText("Width: " + processor.getWidth() + " Height: " + processor.getHeight());
-					status.setText("File loadded sucessfully. \nNote: application "
-							+ "will shutdown if the image processing time takes too long \n(might be due to"
-							+ " the chosen mode, try changing it if termination occurs)");
+					status.setText("File loadded sucessfully. \nNote: processing "
+							+ "is stopped if it takes too long \n(might be due to"
+							+ " the chosen mode, try changing it if it is stopped)");
 					changeButtons(1, b -> b.setDisable(false));
 					inRun = true;
 				} catch (Exception e) {
@@ -152,13 +152,12 @@ public class LandingController {
 			consume.doTask(processor);
 			processingTime.setText("Processed in " + processor.getProcessingTime() + " seconds");
 			status.setText("Done");
+		} catch (ProcessingTimeoutException e) {
+			status.setText("Processing took too long and was stopped after " + e.getRowsDone() + " of "
+					+ e.getRows() + " rows \n(might be due to the chosen mode, try changing it)");
 		} catch (Exception e) {
-			if (e instanceof TimeoutException) {
-				System.exit(-1);
-			} else {
-				e.printStackTrace();
-				status.setText("Error occurred");
-			}
+			e.printStackTrace();
+			status.setText("Error occurred");
 		}
 	}
 }
\ No newline at end of file
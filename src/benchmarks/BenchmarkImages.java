@@ -0,0 +1,75 @@
+package benchmarks;
+
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+
+import javax.imageio.ImageIO;
+
+import imageprocessing.Binarizer;
+
+/**
+ * Shared helpers to prepare the inputs of the benchmarks
+ * 
+ * @author Thai Kha Le
+ *
+ */
+public final class BenchmarkImages {
+
+	private BenchmarkImages() {
+	}
+
+	/**
+	 * Read an image from the images folder
+	 * 
+	 * @param fileLocation
+	 *            file location of type String
+	 * @return the decoded image
+	 * @throws IOException
+	 *             if the file cannot be read
+	 */
+	public static BufferedImage load(String fileLocation) throws IOException {
+		BufferedImage image = ImageIO.read(new File(fileLocation));
+		if (image == null)
+			throw new IOException("Could not decode " + fileLocation);
+		return image;
+	}
+
+	/**
+	 * Upscale an image with nearest neighbour sampling, so that the objects
+	 * keep their hard edges
+	 * 
+	 * @param image
+	 *            the source image
+	 * @param xFactor
+	 *            horizontal scale factor
+	 * @param yFactor
+	 *            vertical scale factor
+	 * @return the scaled image
+	 */
+	public static BufferedImage scale(BufferedImage image, int xFactor, int yFactor) {
+		int wid = image.getWidth() * xFactor;
+		int hei = image.getHeight() * yFactor;
+		BufferedImage scaled = new BufferedImage(wid, hei, BufferedImage.TYPE_INT_RGB);
+		Graphics2D g = scaled.createGraphics();
+		g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_NEAREST_NEIGHBOR);
+		g.drawImage(image, 0, 0, wid, hei, null);
+		g.dispose();
+		return scaled;
+	}
+
+	/**
+	 * Binarize an image with the fixed threshold of the processor
+	 * 
+	 * @param image
+	 *            the image
+	 * @param mode
+	 *            0 if brighter is a foreground, 1 if darker is a foreground
+	 * @return row-major mask, 1 for a foreground pixel and 0 otherwise
+	 */
+	public static byte[] mask(BufferedImage image, int mode) {
+		return Binarizer.binarize(image, 128, mode == 1);
+	}
+}
@@ -0,0 +1,66 @@
+package benchmarks;
+
+import java.awt.image.BufferedImage;
+
+import edu.princeton.cs.introcs.Stopwatch;
+import imageprocessing.BlockLabeler;
+import imageprocessing.Connectivity;
+import imageprocessing.TwoPassLabeler;
+
+/**
+ * Compare the pixel and the 2x2 block labelers with 8-connectivity on the
+ * dense sample images: time, provisional labels and union calls
+ * 
+ * Execution: java benchmarks.BlockBenchmark [factor rounds]
+ * 
+ * @author Thai Kha Le
+ *
+ */
+public class BlockBenchmark {
+
+	public static void main(String[] args) throws Exception {
+		int factor = args.length > 0 ? Integer.parseInt(args[0]) : 1;
+		int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+
+		for (String file : new String[] { "images/bacteria.bmp", "images/stars.jpg" }) {
+			BufferedImage image = BenchmarkImages.scale(BenchmarkImages.load(file), factor, factor);
+			int wid = image.getWidth();
+			int hei = image.getHeight();
+			for (int mode = 0; mode < 2; mode++) {
+				byte[] mask = BenchmarkImages.mask(image, mode);
+				int[] labels = new int[wid * hei];
+				System.out.println(file + " " + wid + " x " + hei + ", mode " + mode);
+
+				TwoPassLabeler pixels = new TwoPassLabeler(Connectivity.EIGHT);
+				double pixelTime = best(rounds, () -> pixels.label(mask, wid, hei, labels));
+				System.out.println("  pixels: " + pixelTime + " seconds, " + pixels.getProvisionalLabels()
+						+ " labels, " + pixels.getUnionCalls() + " unions");
+
+				BlockLabeler blocks = new BlockLabeler();
+				double blockTime = best(rounds, () -> blocks.label(mask, wid, hei, labels));
+				System.out.println("  blocks: " + blockTime + " seconds, " + blocks.getProvisionalLabels()
+						+ " labels, " + blocks.getUnionCalls() + " unions");
+			}
+		}
+	}
+
+	/**
+	 * Time a run after one warm up
+	 * 
+	 * @param rounds
+	 *            number of timed runs
+	 * @param run
+	 *            the run
+	 * @return the best time in seconds
+	 */
+	private static double best(int rounds, Runnable run) {
+		run.run();
+		double best = Double.MAX_VALUE;
+		for (int r = 0; r < rounds; r++) {
+			Stopwatch watch = new Stopwatch();
+			run.run();
+			best = Math.min(best, watch.elapsedTime());
+		}
+		return best;
+	}
+}
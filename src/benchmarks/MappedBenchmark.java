@@ -0,0 +1,95 @@
+package benchmarks;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+import javax.imageio.ImageIO;
+
+import edu.princeton.cs.introcs.Stopwatch;
+import imageprocessing.Binarizer;
+import imageprocessing.BitMask;
+import imageprocessing.Luminance;
+import imageprocessing.MappedImage;
+
+/**
+ * Compare decoding a BMP with ImageIO then binarizing it, with binarizing
+ * the same pixels mapped from a PGM file: time and the bytes of the
+ * pixels held on the heap
+ *
+ * Execution: java benchmarks.MappedBenchmark [factor rounds]
+ *
+ * @author Thai Kha Le
+ *
+ */
+public class MappedBenchmark {
+
+	public static void main(String[] args) throws Exception {
+		int factor = args.length > 0 ? Integer.parseInt(args[0]) : 2;
+		int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+
+		BufferedImage image = BenchmarkImages.scale(BenchmarkImages.load("images/stars.jpg"), factor, factor);
+		int wid = image.getWidth();
+		int hei = image.getHeight();
+		File bmp = File.createTempFile("mapped", ".bmp");
+		File pgm = File.createTempFile("mapped", ".pgm");
+		try {
+			ImageIO.write(image, "bmp", bmp);
+			try (OutputStream out = new FileOutputStream(pgm)) {
+				out.write(("P5\n" + wid + " " + hei + "\n255\n").getBytes(StandardCharsets.US_ASCII));
+				byte[] row = new byte[wid];
+				for (int y = 0; y < hei; y++) {
+					for (int x = 0; x < wid; x++)
+						row[x] = (byte) Math.round(Luminance.lum(image.getRGB(x, y)));
+					out.write(row);
+				}
+			}
+			System.out.println("stars.jpg " + wid + " x " + hei);
+
+			double decodeTime = best(rounds, () -> {
+				BufferedImage decoded = ImageIO.read(bmp);
+				BitMask.pack(Binarizer.binarize(decoded, 128, true), wid, hei);
+			});
+			DataBuffer buffer = ImageIO.read(bmp).getRaster().getDataBuffer();
+			long bytes = (long) buffer.getSize() * DataBuffer.getDataTypeSize(buffer.getDataType()) / 8;
+			System.out.println("  decode: " + decodeTime + " seconds, " + bytes + " bytes of pixels");
+
+			double mappedTime = best(rounds, () -> MappedImage.open(pgm).binarize(128, true));
+			System.out.println("  mapped: " + mappedTime + " seconds, " + wid + " bytes of pixels, one row");
+		} finally {
+			bmp.delete();
+			pgm.delete();
+		}
+	}
+
+	/**
+	 * A run that may throw
+	 */
+	private interface Run {
+		void run() throws Exception;
+	}
+
+	/**
+	 * Time a run after one warm up
+	 *
+	 * @param rounds
+	 *            number of timed runs
+	 * @param run
+	 *            the run
+	 * @return the best time in seconds
+	 * @throws Exception
+	 */
+	private static double best(int rounds, Run run) throws Exception {
+		run.run();
+		double best = Double.MAX_VALUE;
+		for (int r = 0; r < rounds; r++) {
+			Stopwatch watch = new Stopwatch();
+			run.run();
+			best = Math.min(best, watch.elapsedTime());
+		}
+		return best;
+	}
+}
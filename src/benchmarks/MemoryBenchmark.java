@@ -0,0 +1,118 @@
+package benchmarks;
+
+import java.awt.Point;
+import java.awt.image.BufferedImage;
+import java.util.HashSet;
+
+import imageprocessing.Component;
+import imageprocessing.ConnectedComponentImage;
+import imageprocessing.FixedThreshold;
+import imageprocessing.TwoPassLabeler;
+
+/**
+ * Heap held by a processed image in mode 1, where most pixels are
+ * background, next to what a background component would add to it: the
+ * background pixels as a set of points, as the processor first kept them,
+ * and as horizontal runs. The processor now reads the background from its
+ * labels and keeps neither. Sizes are measured as the heap in use after
+ * full collections, so they are approximate
+ *
+ * Execution: java benchmarks.MemoryBenchmark [factor]
+ *
+ * @author Thai Kha Le
+ *
+ */
+public class MemoryBenchmark {
+
+	private static Object kept; // what was measured last
+
+	public static void main(String[] args) throws Exception {
+		int factor = args.length > 0 ? Integer.parseInt(args[0]) : 1;
+
+		for (String file : new String[] { "images/shapes.bmp", "images/bacteria.bmp" }) {
+			BufferedImage image = BenchmarkImages.scale(BenchmarkImages.load(file), factor, factor);
+			int wid = image.getWidth();
+			int hei = image.getHeight();
+			byte[] mask = BenchmarkImages.mask(image, 1);
+			System.out.println(file + " " + wid + " x " + hei + ", mode 1");
+
+			long processorBytes = measure(() -> {
+				ConnectedComponentImage processor = new ConnectedComponentImage(image, new FixedThreshold(128, true),
+						new TwoPassLabeler(), true);
+				processor.countComponents();
+				return processor;
+			});
+			System.out.println("  processor: " + processorBytes + " bytes, "
+					+ ((ConnectedComponentImage) kept).countComponents() + " components");
+
+			long pointBytes = measure(() -> {
+				HashSet<Point> points = new HashSet<>();
+				for (int y = 0; y < hei; y++) {
+					for (int x = 0; x < wid; x++) {
+						if (mask[y * wid + x] == 0)
+							points.add(new Point(x, y));
+					}
+				}
+				return points;
+			});
+			System.out.println("  background as points: " + pointBytes + " bytes more, "
+					+ ((HashSet<?>) kept).size() + " pixels");
+
+			long runBytes = measure(() -> {
+				Component runs = new Component();
+				for (int y = 0; y < hei; y++) {
+					for (int x = 0; x < wid; x++) {
+						if (mask[y * wid + x] != 0)
+							continue;
+						int xStart = x;
+						while (x < wid && mask[y * wid + x] == 0)
+							x++;
+						runs.addRun(y, xStart, x - 1);
+					}
+				}
+				return runs;
+			});
+			System.out.println("  background as runs: " + runBytes + " bytes more, "
+					+ ((Component) kept).getRunCount() + " runs");
+		}
+		kept = null;
+	}
+
+	/**
+	 * Something to measure that may throw
+	 */
+	private interface Make {
+		Object make() throws Exception;
+	}
+
+	/**
+	 * Measure the heap held by what a maker makes. The result is kept in a
+	 * static field, which is a root whatever the JIT makes of the locals
+	 *
+	 * @param make
+	 *            the maker
+	 * @return bytes held
+	 * @throws Exception
+	 */
+	private static long measure(Make make) throws Exception {
+		kept = null;
+		// the first collection after the last measurement does not always
+		// free what it kept
+		used();
+		long start = used();
+		kept = make.make();
+		return used() - start;
+	}
+
+	/**
+	 * Heap in use after full collections
+	 *
+	 * @return bytes in use
+	 */
+	private static long used() {
+		Runtime runtime = Runtime.getRuntime();
+		for (int i = 0; i < 3; i++)
+			System.gc();
+		return runtime.totalMemory() - runtime.freeMemory();
+	}
+}
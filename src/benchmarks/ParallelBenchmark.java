@@ -0,0 +1,50 @@
+package benchmarks;
+
+import java.awt.image.BufferedImage;
+
+import edu.princeton.cs.introcs.Stopwatch;
+import imageprocessing.Labeler;
+import imageprocessing.ParallelLabeler;
+import imageprocessing.TwoPassLabeler;
+
+/**
+ * Compare TwoPassLabeler with ParallelLabeler on a large image made by
+ * upscaling STARS2.jpg
+ * 
+ * Execution: java benchmarks.ParallelBenchmark [xFactor yFactor rounds]
+ * 
+ * @author Thai Kha Le
+ *
+ */
+public class ParallelBenchmark {
+
+	public static void main(String[] args) throws Exception {
+		int xFactor = args.length > 0 ? Integer.parseInt(args[0]) : 4;
+		int yFactor = args.length > 1 ? Integer.parseInt(args[1]) : 4;
+		int rounds = args.length > 2 ? Integer.parseInt(args[2]) : 5;
+
+		BufferedImage image = BenchmarkImages.scale(BenchmarkImages.load("images/STARS2.jpg"), xFactor, yFactor);
+		int wid = image.getWidth();
+		int hei = image.getHeight();
+		byte[] mask = BenchmarkImages.mask(image, 0);
+		int[] labels = new int[wid * hei];
+		System.out.println("Image " + wid + " x " + hei + ", " + Runtime.getRuntime().availableProcessors()
+				+ " processors");
+
+		Labeler[] labelers = new Labeler[] { new TwoPassLabeler(), new ParallelLabeler() };
+		double[] best = new double[labelers.length];
+		for (int i = 0; i < labelers.length; i++) {
+			labelers[i].label(mask, wid, hei, labels); // warm up
+			best[i] = Double.MAX_VALUE;
+			int count = 0;
+			for (int r = 0; r < rounds; r++) {
+				Stopwatch watch = new Stopwatch();
+				count = labelers[i].label(mask, wid, hei, labels);
+				best[i] = Math.min(best[i], watch.elapsedTime());
+			}
+			System.out.println(labelers[i].getClass().getSimpleName() + ": " + count + " components, best of "
+					+ rounds + " rounds " + best[i] + " seconds");
+		}
+		System.out.println("Parallel speedup: " + (best[0] / best[1]) + "x");
+	}
+}
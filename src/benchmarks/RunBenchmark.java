@@ -0,0 +1,67 @@
+package benchmarks;
+
+import java.awt.image.BufferedImage;
+
+import edu.princeton.cs.introcs.Stopwatch;
+import imageprocessing.BitMask;
+import imageprocessing.RunLabeler;
+import imageprocessing.TwoPassLabeler;
+
+/**
+ * Compare the pixel and the run labelers on the sparse sample images, from
+ * the packed mask: time, foreground runs and provisional labels
+ *
+ * Execution: java benchmarks.RunBenchmark [factor rounds]
+ *
+ * @author Thai Kha Le
+ *
+ */
+public class RunBenchmark {
+
+	public static void main(String[] args) throws Exception {
+		int factor = args.length > 0 ? Integer.parseInt(args[0]) : 1;
+		int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+
+		for (String file : new String[] { "images/testImages/onePixelInMiddle.bmp", "images/stars.jpg" }) {
+			BufferedImage image = BenchmarkImages.scale(BenchmarkImages.load(file), factor, factor);
+			int wid = image.getWidth();
+			int hei = image.getHeight();
+			for (int mode = 0; mode < 2; mode++) {
+				BitMask mask = BitMask.pack(BenchmarkImages.mask(image, mode), wid, hei);
+				int[] labels = new int[wid * hei];
+				System.out.println(file + " " + wid + " x " + hei + ", mode " + mode + ", "
+						+ mask.cardinality() + " foreground pixels");
+
+				TwoPassLabeler pixels = new TwoPassLabeler();
+				double pixelTime = best(rounds, () -> pixels.label(mask, labels));
+				System.out.println("  pixels: " + pixelTime + " seconds, " + pixels.getProvisionalLabels()
+						+ " labels");
+
+				RunLabeler runs = new RunLabeler();
+				double runTime = best(rounds, () -> runs.label(mask, labels));
+				System.out.println("  runs:   " + runTime + " seconds, " + runs.getRunCount() + " runs, "
+						+ runs.getProvisionalLabels() + " labels");
+			}
+		}
+	}
+
+	/**
+	 * Time a run after one warm up
+	 *
+	 * @param rounds
+	 *            number of timed runs
+	 * @param run
+	 *            the run
+	 * @return the best time in seconds
+	 */
+	private static double best(int rounds, Runnable run) {
+		run.run();
+		double best = Double.MAX_VALUE;
+		for (int r = 0; r < rounds; r++) {
+			Stopwatch watch = new Stopwatch();
+			run.run();
+			best = Math.min(best, watch.elapsedTime());
+		}
+		return best;
+	}
+}
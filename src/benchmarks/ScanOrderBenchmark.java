@@ -0,0 +1,49 @@
+package benchmarks;
+
+import java.awt.image.BufferedImage;
+
+import edu.princeton.cs.introcs.Stopwatch;
+import imageprocessing.TwoPassLabeler;
+import imageprocessing.TwoPassLabeler.ScanOrder;
+
+/**
+ * Compare the row-major and the column-major scans of TwoPassLabeler on a
+ * wide panorama made by upscaling STARS2.jpg
+ * 
+ * Execution: java benchmarks.ScanOrderBenchmark [xFactor yFactor rounds]
+ * 
+ * @author Thai Kha Le
+ *
+ */
+public class ScanOrderBenchmark {
+
+	public static void main(String[] args) throws Exception {
+		int xFactor = args.length > 0 ? Integer.parseInt(args[0]) : 12;
+		int yFactor = args.length > 1 ? Integer.parseInt(args[1]) : 2;
+		int rounds = args.length > 2 ? Integer.parseInt(args[2]) : 5;
+
+		BufferedImage image = BenchmarkImages.scale(BenchmarkImages.load("images/STARS2.jpg"), xFactor, yFactor);
+		int wid = image.getWidth();
+		int hei = image.getHeight();
+		byte[] mask = BenchmarkImages.mask(image, 0);
+		int[] labels = new int[wid * hei];
+		System.out.println("Image " + wid + " x " + hei);
+
+		ScanOrder[] orders = new ScanOrder[] { ScanOrder.COLUMN_MAJOR, ScanOrder.ROW_MAJOR };
+		double[] best = new double[orders.length];
+		for (int i = 0; i < orders.length; i++) {
+			TwoPassLabeler labeler = new TwoPassLabeler(orders[i]);
+			labeler.label(mask, wid, hei, labels); // warm up
+			best[i] = Double.MAX_VALUE;
+			int count = 0;
+			for (int r = 0; r < rounds; r++) {
+				Stopwatch watch = new Stopwatch();
+				count = labeler.label(mask, wid, hei, labels);
+				best[i] = Math.min(best[i], watch.elapsedTime());
+			}
+			System.out.println(orders[i] + ": " + count + " components, best of " + rounds + " rounds " + best[i]
+					+ " seconds");
+		}
+		System.out.println("Row-major speedup: " + (best[0] / best[1]) + "x");
+	}
+}
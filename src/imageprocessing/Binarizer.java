@@ -0,0 +1,302 @@
+package imageprocessing;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.ComponentSampleModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.awt.image.WritableRaster;
+
+import edu.princeton.cs.introcs.Picture;
+
+/**
+ * Binarization of packed ARGB pixels into a byte mask in one pass. The
+ * luminance is computed in integers with the NTSC weights scaled by 1000
+ * (299, 587, 114), so Y < threshold becomes 299*r + 587*g + 114*b <
+ * 1000*threshold, which needs neither a double nor a Color per pixel. A
+ * pixel exactly on the threshold, such as the gray 128, 128, 128, is decided
+ * by Luminance.lum as before, whose rounding puts some of them below it
+ *
+ * @author Thai Kha Le
+ *
+ */
+public final class Binarizer {
+
+	/**
+	 * Scale of the integer luminance
+	 */
+	public static final int SCALE = 1000;
+
+	private static final int RED = 299, GREEN = 587, BLUE = 114;
+
+	private Binarizer() {
+	}
+
+	/**
+	 * Get the luminance of a packed RGB value in integers
+	 *
+	 * @param rgb
+	 *            packed RGB value, the alpha byte is ignored
+	 * @return the luminance times SCALE, between 0 and 255 * SCALE
+	 */
+	public static int luma(int rgb) {
+		return RED * ((rgb >> 16) & 0xFF) + GREEN * ((rgb >> 8) & 0xFF) + BLUE * (rgb & 0xFF);
+	}
+
+	/**
+	 * Binarize packed RGB pixels
+	 *
+	 * @param rgb
+	 *            row-major array of packed RGB values
+	 * @param threshold
+	 *            pixels with a luminance below it are dark
+	 * @param darkForeground
+	 *            true if the dark pixels are the foreground, false if the
+	 *            bright ones are
+	 * @return row-major mask, 1 for a foreground pixel and 0 otherwise
+	 */
+	public static byte[] binarize(int[] rgb, int threshold, boolean darkForeground) {
+		byte[] mask = new byte[rgb.length];
+		scalar(rgb, 0, mask, 0, rgb.length, threshold, darkForeground ? 0 : 1);
+		return mask;
+	}
+
+	/**
+	 * Binarize a picture straight from its pixels
+	 *
+	 * @param picture
+	 *            the picture
+	 * @param threshold
+	 *            pixels with a luminance below it are dark
+	 * @param darkForeground
+	 *            true if the dark pixels are the foreground, false if the
+	 *            bright ones are
+	 * @return row-major mask, 1 for a foreground pixel and 0 otherwise
+	 */
+	public static byte[] binarize(Picture picture, int threshold, boolean darkForeground) {
+		BufferedImage image = PictureRaster.getImage(picture);
+		if (image == null)
+			return binarize(PictureRaster.readRGB(picture), threshold, darkForeground);
+		return binarize(image, threshold, darkForeground);
+	}
+
+	/**
+	 * Binarize an image. Integer and byte interleaved rasters are read
+	 * straight from their data buffer without copying the pixels first, any
+	 * other layout is read one row at a time
+	 *
+	 * @param image
+	 *            the image
+	 * @param threshold
+	 *            pixels with a luminance below it are dark
+	 * @param darkForeground
+	 *            true if the dark pixels are the foreground, false if the
+	 *            bright ones are
+	 * @return row-major mask, 1 for a foreground pixel and 0 otherwise
+	 */
+	public static byte[] binarize(BufferedImage image, int threshold, boolean darkForeground) {
+		int wid = image.getWidth();
+		int hei = image.getHeight();
+		Rows rows = new Rows(image, threshold, darkForeground);
+		byte[] mask = new byte[wid * hei];
+		for (int y = 0; y < hei; y++)
+			rows.binarize(y, mask, y * wid);
+		return mask;
+	}
+
+	/**
+	 * Binarize an image into a packed mask, one row at a time so that no
+	 * byte mask of the whole image is made
+	 *
+	 * @param image
+	 *            the image
+	 * @param threshold
+	 *            pixels with a luminance below it are dark
+	 * @param darkForeground
+	 *            true if the dark pixels are the foreground, false if the
+	 *            bright ones are
+	 * @return the packed mask
+	 */
+	public static BitMask pack(BufferedImage image, int threshold, boolean darkForeground) {
+		int wid = image.getWidth();
+		int hei = image.getHeight();
+		Rows rows = new Rows(image, threshold, darkForeground);
+		BitMask bits = new BitMask(wid, hei);
+		byte[] row = new byte[wid];
+		for (int y = 0; y < hei; y++) {
+			rows.binarize(y, row, 0);
+			bits.packRow(y, row, 0);
+		}
+		return bits;
+	}
+
+	/**
+	 * Count the pixels of each luminance, one row at a time so that the
+	 * pixels of the whole image are not copied
+	 *
+	 * @param image
+	 *            the image
+	 * @return 256 bins, bin g counts the luminances from g included to g + 1
+	 */
+	static int[] histogram(BufferedImage image) {
+		Rows rows = new Rows(image, 0, true);
+		int[] histogram = new int[256];
+		for (int y = 0; y < image.getHeight(); y++)
+			rows.count(y, histogram);
+		return histogram;
+	}
+
+	/**
+	 * Binarizes the rows of an image, the layout of its raster is looked at
+	 * once
+	 */
+	private static final class Rows {
+		private final BufferedImage image;
+		private final int wid;
+		private final int threshold, limit, flip;
+		private final int[] ints; // TYPE_INT_RGB or TYPE_INT_ARGB data, or null
+		private final byte[] bytes; // TYPE_3BYTE_BGR or TYPE_4BYTE_ABGR data, or null
+		private final int offset, stride, step;
+		private final int[] bands; // red, green, blue (, alpha)
+		private final int[] rgb; // one row of any other layout
+
+		Rows(BufferedImage image, int threshold, boolean darkForeground) {
+			this.image = image;
+			this.threshold = threshold;
+			wid = image.getWidth();
+			limit = threshold * SCALE;
+			flip = darkForeground ? 0 : 1;
+			WritableRaster raster = image.getRaster();
+			DataBuffer buffer = raster.getDataBuffer();
+			boolean plain = raster.getParent() == null && raster.getSampleModelTranslateX() == 0
+					&& raster.getSampleModelTranslateY() == 0;
+			int type = image.getType();
+			offset = buffer.getOffset();
+			if (plain && (type == BufferedImage.TYPE_INT_RGB || type == BufferedImage.TYPE_INT_ARGB)) {
+				ints = ((DataBufferInt) buffer).getData();
+				bytes = null;
+				stride = ((SinglePixelPackedSampleModel) raster.getSampleModel()).getScanlineStride();
+				step = 1;
+				bands = null;
+				rgb = null;
+			} else if (plain && (type == BufferedImage.TYPE_3BYTE_BGR || type == BufferedImage.TYPE_4BYTE_ABGR)) {
+				ints = null;
+				bytes = ((DataBufferByte) buffer).getData();
+				ComponentSampleModel model = (ComponentSampleModel) raster.getSampleModel();
+				stride = model.getScanlineStride();
+				step = model.getPixelStride();
+				bands = model.getBandOffsets();
+				rgb = null;
+			} else {
+				ints = null;
+				bytes = null;
+				stride = step = 0;
+				bands = null;
+				rgb = new int[wid];
+			}
+		}
+
+		/**
+		 * Binarize one row
+		 *
+		 * @param y
+		 *            the row
+		 * @param mask
+		 *            mask to write, 1 for a foreground pixel and 0 otherwise
+		 * @param to
+		 *            index of the first pixel of the row in mask
+		 */
+		void binarize(int y, byte[] mask, int to) {
+			if (ints != null) {
+				scalar(ints, offset + y * stride, mask, to, wid, threshold, flip);
+			} else if (bytes != null) {
+				int at = offset + y * stride;
+				for (int x = 0; x < wid; x++, at += step) {
+					mask[to + x] = (byte) (dark(pixel(at), limit, threshold) ^ flip);
+				}
+			} else {
+				image.getRGB(0, y, wid, 1, rgb, 0, wid);
+				scalar(rgb, 0, mask, to, wid, threshold, flip);
+			}
+		}
+
+		/**
+		 * Add the luminances of one row to a histogram
+		 *
+		 * @param y
+		 *            the row
+		 * @param histogram
+		 *            256 bins of luminance
+		 */
+		void count(int y, int[] histogram) {
+			if (ints != null) {
+				int at = offset + y * stride;
+				for (int x = 0; x < wid; x++)
+					histogram[luma(ints[at + x]) / SCALE]++;
+			} else if (bytes != null) {
+				int at = offset + y * stride;
+				for (int x = 0; x < wid; x++, at += step)
+					histogram[luma(pixel(at)) / SCALE]++;
+			} else {
+				image.getRGB(0, y, wid, 1, rgb, 0, wid);
+				for (int x = 0; x < wid; x++)
+					histogram[luma(rgb[x]) / SCALE]++;
+			}
+		}
+
+		/**
+		 * Pack a pixel of a byte raster
+		 *
+		 * @param at
+		 *            index of the pixel in bytes
+		 * @return packed RGB value
+		 */
+		private int pixel(int at) {
+			return (bytes[at + bands[0]] & 0xFF) << 16 | (bytes[at + bands[1]] & 0xFF) << 8
+					| (bytes[at + bands[2]] & 0xFF);
+		}
+	}
+
+	/**
+	 * Binarize a run of pixels one at a time
+	 *
+	 * @param rgb
+	 *            packed RGB values
+	 * @param from
+	 *            index of the first pixel in rgb
+	 * @param mask
+	 *            the mask to write
+	 * @param to
+	 *            index of the first pixel in mask
+	 * @param n
+	 *            number of pixels
+	 * @param threshold
+	 * @param flip
+	 *            0 if the dark pixels are the foreground, 1 otherwise
+	 */
+	private static void scalar(int[] rgb, int from, byte[] mask, int to, int n, int threshold, int flip) {
+		int limit = threshold * SCALE;
+		for (int i = 0; i < n; i++) {
+			mask[to + i] = (byte) (dark(rgb[from + i], limit, threshold) ^ flip);
+		}
+	}
+
+	/**
+	 * Decide if a pixel is dark
+	 *
+	 * @param rgb
+	 *            packed RGB value
+	 * @param limit
+	 *            the threshold times SCALE
+	 * @param threshold
+	 * @return 1 if the pixel is dark, 0 otherwise
+	 */
+	private static int dark(int rgb, int limit, int threshold) {
+		int luma = luma(rgb);
+		if (luma == limit)
+			return Luminance.lum(rgb) < threshold ? 1 : 0;
+		// the sign bit of luma - limit is 1 for a dark pixel
+		return (luma - limit) >>> 31;
+	}
+}
@@ -0,0 +1,220 @@
+package imageprocessing;
+
+import java.util.Arrays;
+
+/**
+ * Binary image packed one bit per pixel into longs, 32 times smaller than a
+ * picture of RGB ints. Each row starts on a new long, bit x % 64 of long
+ * x / 64 of the row holds pixel x, so a whole long of background is skipped
+ * at once and the next foreground pixel is found with
+ * Long.numberOfTrailingZeros
+ *
+ * @author Thai Kha Le
+ *
+ */
+public class BitMask {
+
+	private final int wid, hei;
+	private final int wordsPerRow;
+	private final long[] words;
+
+	/**
+	 * Constructor, all pixels are background
+	 *
+	 * @param wid
+	 *            width of the image
+	 * @param hei
+	 *            height of the image
+	 */
+	public BitMask(int wid, int hei) {
+		this.wid = wid;
+		this.hei = hei;
+		wordsPerRow = (wid + 63) >>> 6;
+		words = new long[wordsPerRow * hei];
+	}
+
+	/**
+	 * Pack a byte mask
+	 *
+	 * @param mask
+	 *            row-major mask, non-zero for a foreground pixel
+	 * @param wid
+	 *            width of the image
+	 * @param hei
+	 *            height of the image
+	 * @return the packed mask
+	 */
+	public static BitMask pack(byte[] mask, int wid, int hei) {
+		BitMask bits = new BitMask(wid, hei);
+		for (int y = 0; y < hei; y++)
+			bits.packRow(y, mask, y * wid);
+		return bits;
+	}
+
+	/**
+	 * Pack one row of a byte mask, so that a mask can be packed while it is
+	 * read without holding it all
+	 *
+	 * @param y
+	 *            the row
+	 * @param mask
+	 *            mask holding the row, non-zero for a foreground pixel
+	 * @param offset
+	 *            index of the first pixel of the row in mask
+	 */
+	public void packRow(int y, byte[] mask, int offset) {
+		int at = y * wordsPerRow;
+		for (int x = 0; x < wid; x += 64) {
+			long word = 0;
+			for (int b = 0, n = Math.min(64, wid - x); b < n; b++) {
+				if (mask[offset + x + b] != 0)
+					word |= 1L << b;
+			}
+			words[at + (x >>> 6)] = word;
+		}
+	}
+
+	/**
+	 * Width getter
+	 *
+	 * @return width of the image
+	 */
+	public int getWidth() {
+		return wid;
+	}
+
+	/**
+	 * Height getter
+	 *
+	 * @return height of the image
+	 */
+	public int getHeight() {
+		return hei;
+	}
+
+	/**
+	 * Check a pixel
+	 *
+	 * @param x
+	 * @param y
+	 * @return true if the pixel is foreground
+	 */
+	public boolean get(int x, int y) {
+		return (words[y * wordsPerRow + (x >>> 6)] & 1L << x) != 0;
+	}
+
+	/**
+	 * Set a pixel
+	 *
+	 * @param x
+	 * @param y
+	 * @param foreground
+	 *            true for a foreground pixel, false for a background one
+	 */
+	public void set(int x, int y, boolean foreground) {
+		int at = y * wordsPerRow + (x >>> 6);
+		if (foreground)
+			words[at] |= 1L << x;
+		else
+			words[at] &= ~(1L << x);
+	}
+
+	/**
+	 * Find the next foreground pixel of a row
+	 *
+	 * @param y
+	 *            the row
+	 * @param x
+	 *            the first x to look at
+	 * @return x of the next foreground pixel from x on, wid if there is none
+	 */
+	public int nextSetBit(int y, int x) {
+		if (x >= wid)
+			return wid;
+		int row = y * wordsPerRow;
+		int w = x >>> 6;
+		long word = words[row + w] & (-1L << x);
+		while (word == 0) {
+			if (++w == wordsPerRow)
+				return wid;
+			word = words[row + w];
+		}
+		return (w << 6) + Long.numberOfTrailingZeros(word);
+	}
+
+	/**
+	 * Find the next background pixel of a row
+	 *
+	 * @param y
+	 *            the row
+	 * @param x
+	 *            the first x to look at
+	 * @return x of the next background pixel from x on, wid if there is none
+	 */
+	public int nextClearBit(int y, int x) {
+		if (x >= wid)
+			return wid;
+		int row = y * wordsPerRow;
+		int w = x >>> 6;
+		long word = ~words[row + w] & (-1L << x);
+		while (word == 0) {
+			if (++w == wordsPerRow)
+				return wid;
+			word = ~words[row + w];
+		}
+		return Math.min((w << 6) + Long.numberOfTrailingZeros(word), wid);
+	}
+
+	/**
+	 * Count the foreground pixels
+	 *
+	 * @return number of foreground pixels
+	 */
+	public int cardinality() {
+		int count = 0;
+		for (long word : words)
+			count += Long.bitCount(word);
+		return count;
+	}
+
+	/**
+	 * Unpack one row into a byte mask
+	 *
+	 * @param y
+	 *            the row
+	 * @param mask
+	 *            row-major mask to write, 1 for a foreground pixel and 0
+	 *            otherwise
+	 * @param offset
+	 *            index of the first pixel of the row in mask
+	 */
+	public void unpackRow(int y, byte[] mask, int offset) {
+		Arrays.fill(mask, offset, offset + wid, (byte) 0);
+		for (int x = nextSetBit(y, 0); x < wid; x = nextSetBit(y, x)) {
+			int end = nextClearBit(y, x);
+			Arrays.fill(mask, offset + x, offset + end, (byte) 1);
+			x = end;
+		}
+	}
+
+	/**
+	 * Unpack into a byte mask
+	 *
+	 * @return row-major mask, 1 for a foreground pixel and 0 otherwise
+	 */
+	public byte[] toBytes() {
+		byte[] mask = new byte[wid * hei];
+		for (int y = 0; y < hei; y++)
+			unpackRow(y, mask, y * wid);
+		return mask;
+	}
+
+	/**
+	 * Get the memory taken by the pixels
+	 *
+	 * @return number of bytes of the packed words
+	 */
+	public long sizeInBytes() {
+		return 8L * words.length;
+	}
+}
@@ -0,0 +1,399 @@
+package imageprocessing;
+
+import java.util.function.IntFunction;
+
+/**
+ * Block-based two-pass labeling with 8-connectivity, in the style of the BBDT
+ * of Grana et al. The mask is read in 2x2 blocks: all foreground pixels of a
+ * block are connected to each other, so the first pass gives one provisional
+ * label to a whole block. Which neighbour blocks a block connects to is
+ * looked up in a table precomputed over the ten pixels that decide it, and
+ * the table already leaves out the neighbours that are known to be connected
+ * to each other, so fewer labels are made and fewer unions are asked for than
+ * with a pixel at a time. A block that touches none of them looks ahead at
+ * the next block before it starts a label of its own
+ *
+ * <pre>
+ *  +---+---+---+
+ *  | P | Q | R |    h i j k   row y - 1
+ *  +---+---+---+    n o p     row y
+ *  | S | X |        r s t     row y + 1
+ *  +---+---+
+ * </pre>
+ *
+ * @author Thai Kha Le
+ *
+ */
+public class BlockLabeler implements Labeler {
+
+	// neighbour blocks in the actions of the table
+	private static final int P = 1, Q = 2, R = 4, S = 8, NEW = 16;
+
+	// bits of the pixels in the index of the table
+	private static final int BIT_H = 1, BIT_I = 2, BIT_J = 4, BIT_K = 8, BIT_N = 16, BIT_R = 32, BIT_O = 64,
+			BIT_P = 128, BIT_S = 256, BIT_T = 512;
+
+	private static final byte[] ACTIONS = actions();
+
+	private final IntFunction<? extends GrowableUnionFind> unionFind;
+	private GrowableUnionFind equi; // equivalence table
+	private int provisionalLabels;
+	private int unionCalls;
+	private int merges; // unions that joined two components
+
+	/**
+	 * Constructor
+	 */
+	public BlockLabeler() {
+		this(WeightedUnionFind::new);
+	}
+
+	/**
+	 * Constructor
+	 *
+	 * @param unionFind
+	 *            creates the equivalence table of each run, given the number
+	 *            of labels to make room for at first. The table must grow
+	 *            as more labels are made
+	 */
+	public BlockLabeler(IntFunction<? extends GrowableUnionFind> unionFind) {
+		this.unionFind = unionFind;
+	}
+
+	/**
+	 * Connectivity getter
+	 *
+	 * @return 8-connectivity, the only one of the blocks
+	 */
+	@Override
+	public Connectivity getConnectivity() {
+		return Connectivity.EIGHT;
+	}
+
+	/**
+	 * Get the number of provisional labels the last run put in the
+	 * equivalence table
+	 *
+	 * @return number of labels made
+	 */
+	public int getProvisionalLabels() {
+		return provisionalLabels;
+	}
+
+	/**
+	 * Get the number of times the last run had to union two different labels
+	 *
+	 * @return number of union calls
+	 */
+	public int getUnionCalls() {
+		return unionCalls;
+	}
+
+	/**
+	 * Label the foreground pixels of a binary mask with 8-connectivity
+	 *
+	 * @param mask
+	 *            row-major mask, 1 for foreground and 0 for background
+	 * @param wid
+	 *            width of the image
+	 * @param hei
+	 *            height of the image
+	 * @param labels
+	 *            row-major array to be filled with the labels
+	 * @return the number of components
+	 */
+	@Override
+	public int label(byte[] mask, int wid, int hei, int[] labels) {
+		return label(mask, null, wid, hei, labels);
+	}
+
+	/**
+	 * Tell if the engine reads a packed mask without unpacking it first
+	 *
+	 * @return true, the rows of a block row are unpacked three at a time
+	 */
+	@Override
+	public boolean readsBits() {
+		return true;
+	}
+
+	/**
+	 * Label the foreground pixels of a packed mask with 8-connectivity. Only
+	 * the row above a block row and its two rows are unpacked at a time
+	 *
+	 * @param mask
+	 *            the packed mask
+	 * @param labels
+	 *            row-major array to be filled with the labels
+	 * @return the number of components
+	 */
+	@Override
+	public int label(BitMask mask, int[] labels) {
+		return label(null, mask, mask.getWidth(), mask.getHeight(), labels);
+	}
+
+	/**
+	 * Label the foreground pixels of a byte or a packed mask. The pixels are
+	 * read from mask, or from a window of three rows unpacked from bits: the
+	 * row above at 0, the rows of the blocks at wid and 2 * wid. The offsets
+	 * between the pixels are the same in both
+	 *
+	 * @param mask
+	 *            row-major mask, or null if bits is given
+	 * @param bits
+	 *            packed mask read instead of mask, or null
+	 * @param wid
+	 * @param hei
+	 * @param labels
+	 * @return the number of components
+	 */
+	private int label(byte[] mask, BitMask bits, int wid, int hei, int[] labels) {
+		byte[] window = bits != null ? new byte[3 * wid] : null;
+		int bw = (wid + 1) / 2;
+		int bh = (hei + 1) / 2;
+		int[] blocks = new int[bw * bh]; // provisional label of each block
+		// the table starts with room for the labels of one row of blocks and
+		// grows with the labels made
+		equi = unionFind.apply(bw / 2 + 2);
+		provisionalLabels = 0;
+		unionCalls = 0;
+		merges = 0;
+		int count = 0;
+
+		try {
+			// First pass over the blocks
+			for (int by = 0, y = 0; by < bh; by++, y += 2) {
+				if (y % Cancellation.ROWS == 0)
+					Cancellation.checkpoint(y, hei);
+				boolean up = y > 0;
+				boolean down = y + 1 < hei;
+				byte[] rows = mask;
+				int row = y * wid;
+				if (bits != null) {
+					// the row above is the lower row of the previous blocks
+					if (up)
+						System.arraycopy(window, 2 * wid, window, 0, wid);
+					bits.unpackRow(y, window, wid);
+					if (down)
+						bits.unpackRow(y + 1, window, 2 * wid);
+					rows = window;
+					row = wid;
+				}
+				for (int bx = 0, x = 0, b = by * bw; bx < bw; bx++, x += 2, b++) {
+					boolean left = x > 0;
+					boolean right = x + 1 < wid;
+					int id = row + x;
+
+					int index = 0;
+					if (rows[id] != 0)
+						index |= BIT_O;
+					if (right && rows[id + 1] != 0)
+						index |= BIT_P;
+					if (down && rows[id + wid] != 0)
+						index |= BIT_S;
+					if (down && right && rows[id + wid + 1] != 0)
+						index |= BIT_T;
+					if (index == 0) {
+						blocks[b] = 0;
+						continue;
+					}
+					if (up) {
+						int above = id - wid;
+						if (left && rows[above - 1] != 0)
+							index |= BIT_H;
+						if (rows[above] != 0)
+							index |= BIT_I;
+						if (right && rows[above + 1] != 0)
+							index |= BIT_J;
+						if (x + 2 < wid && rows[above + 2] != 0)
+							index |= BIT_K;
+					}
+					if (left) {
+						if (rows[id - 1] != 0)
+							index |= BIT_N;
+						if (down && rows[id + wid - 1] != 0)
+							index |= BIT_R;
+					}
+
+					int action = ACTIONS[index];
+					int l = 0;
+					if ((action & Q) != 0)
+						l = join(l, blocks[b - bw]);
+					if ((action & S) != 0)
+						l = join(l, blocks[b - 1]);
+					if ((action & P) != 0)
+						l = join(l, blocks[b - bw - 1]);
+					if ((action & R) != 0)
+						l = join(l, blocks[b - bw + 1]);
+					if (l == 0 && up)
+						l = lookAhead(rows, wid, hei, x, y, id, index, blocks, b - bw);
+					if (l == 0) {
+						l = equi.makeSet();
+						provisionalLabels++;
+						count++;
+					}
+					blocks[b] = l;
+				}
+			}
+			count -= merges;
+
+			// Second pass, every block takes the final label of its root, 1 to
+			// count in block order, and hands it to its pixels
+			int[] compacted = new int[provisionalLabels + 1];
+			for (int b = 0, m = 0; b < blocks.length; b++) {
+				if (blocks[b] == 0)
+					continue;
+				int root = equi.find(blocks[b]);
+				if (compacted[root] == 0)
+					compacted[root] = ++m;
+				blocks[b] = compacted[root];
+			}
+			for (int y = 0; y < hei; y++) {
+				int id = y * wid;
+				byte[] rows = mask;
+				int m = id; // index of the pixel in rows
+				if (bits != null) {
+					bits.unpackRow(y, window, 0);
+					rows = window;
+					m = 0;
+				}
+				int b = (y >> 1) * bw;
+				int x = 0;
+				for (; x + 1 < wid; x += 2, id += 2, m += 2, b++) {
+					int l = blocks[b];
+					labels[id] = rows[m] != 0 ? l : 0;
+					labels[id + 1] = rows[m + 1] != 0 ? l : 0;
+				}
+				if (x < wid)
+					labels[id] = rows[m] != 0 ? blocks[b] : 0;
+			}
+			return count;
+		} finally {
+			equi = null;
+		}
+	}
+
+	/**
+	 * Find a label for a block that touches no block before it, through the
+	 * next block on the row. A block that only touches the next block would
+	 * otherwise start a label that the next block has to union with the
+	 * label of a block above it
+	 *
+	 * @param mask
+	 * @param wid
+	 * @param hei
+	 * @param x
+	 *            x of the top left pixel of the block
+	 * @param y
+	 *            y of the top left pixel of the block
+	 * @param id
+	 *            index of the top left pixel of the block
+	 * @param index
+	 *            the pixels of the block in the table index
+	 * @param blocks
+	 * @param aboveBlock
+	 *            index of the block above
+	 * @return label of a block above the next block that it touches, 0 if
+	 *         none
+	 */
+	private static int lookAhead(byte[] mask, int wid, int hei, int x, int y, int id, int index, int[] blocks,
+			int aboveBlock) {
+		if (x + 2 >= wid || (index & (BIT_P | BIT_T)) == 0)
+			return 0;
+		boolean down = y + 1 < hei;
+		boolean u = mask[id + 2] != 0;
+		boolean v = down && mask[id + wid + 2] != 0;
+		if (!u && !v)
+			return 0; // the next block does not touch this one
+		boolean u2 = x + 3 < wid && mask[id + 3] != 0;
+		if (!u && !u2)
+			return 0; // the next block does not reach the row above
+		int above = id - wid;
+		if ((mask[above + 2] != 0 || (x + 3 < wid && mask[above + 3] != 0)))
+			return blocks[aboveBlock + 1];
+		if (u2 && x + 4 < wid && mask[above + 4] != 0)
+			return blocks[aboveBlock + 2];
+		return 0;
+	}
+
+	/**
+	 * Join the label of a neighbour block to the label taken so far
+	 *
+	 * @param l
+	 *            label taken so far, 0 if none
+	 * @param neighbour
+	 *            label of the neighbour block
+	 * @return the label to take
+	 */
+	private int join(int l, int neighbour) {
+		if (l == 0)
+			return neighbour;
+		if (l != neighbour) {
+			unionCalls++;
+			int lRoot = equi.find(l);
+			int nRoot = equi.find(neighbour);
+			if (lRoot != nRoot) {
+				equi.union(lRoot, nRoot);
+				merges++;
+			}
+		}
+		return l;
+	}
+
+	/**
+	 * Build the decision table. For each of the 1024 values of the ten
+	 * pixels, the block connects to P if o and h are foreground, to Q if o
+	 * or p touches i or j, to R if p and k are foreground and to S if o or s
+	 * touches n or r. Two of those neighbours are already connected to each
+	 * other if pixels of theirs touch, then only the first of them is kept
+	 *
+	 * @return the actions, a set of P, Q, R, S or NEW, 0 for a background
+	 *         block
+	 */
+	private static byte[] actions() {
+		byte[] actions = new byte[1024];
+		for (int index = 0; index < actions.length; index++) {
+			boolean h = (index & BIT_H) != 0, i = (index & BIT_I) != 0;
+			boolean j = (index & BIT_J) != 0, k = (index & BIT_K) != 0;
+			boolean n = (index & BIT_N) != 0, r = (index & BIT_R) != 0;
+			boolean o = (index & BIT_O) != 0, p = (index & BIT_P) != 0;
+			boolean s = (index & BIT_S) != 0, t = (index & BIT_T) != 0;
+			if (!(o || p || s || t))
+				continue;
+
+			boolean[] connected = new boolean[] { (o || p) && (i || j), (o || s) && (n || r), o && h, p && k };
+			int[] blocks = new int[] { Q, S, P, R };
+			// neighbours known to be connected: Q and S by i and n, P and Q
+			// by h and i, P and S by h and n, Q and R by j and k
+			boolean[][] touch = new boolean[4][4];
+			touch[0][1] = i && n;
+			touch[0][2] = h && i;
+			touch[1][2] = h && n;
+			touch[0][3] = j && k;
+
+			int action = 0;
+			boolean[] covered = new boolean[4];
+			for (int a = 0; a < 4; a++) {
+				if (!connected[a] || covered[a])
+					continue;
+				action |= blocks[a];
+				// skip the neighbours reached from this one, directly or
+				// through another neighbour
+				covered[a] = true;
+				for (boolean grew = true; grew;) {
+					grew = false;
+					for (int c = 0; c < 4; c++) {
+						for (int d = 0; d < 4; d++) {
+							if (covered[c] && !covered[d] && (touch[c][d] || touch[d][c])) {
+								covered[d] = true;
+								grew = true;
+							}
+						}
+					}
+				}
+			}
+			actions[index] = (byte) (action == 0 ? NEW : action);
+		}
+		return actions;
+	}
+}
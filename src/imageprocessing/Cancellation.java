@@ -0,0 +1,118 @@
+package imageprocessing;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Deadline of the labeling running on the current thread. The labelers call
+ * checkpoint() once every ROWS rows of a pass: it records how far the pass
+ * went and stops the labeling with a CancellationException once the thread
+ * is interrupted or the deadline is over, so a scan that takes too long ends
+ * by itself instead of holding its thread and its arrays. Without a
+ * deadline started on the thread, only an interrupt stops the labeling
+ *
+ * @author Thai Kha Le
+ *
+ */
+public final class Cancellation {
+
+	/**
+	 * Number of rows between two checks
+	 */
+	public static final int ROWS = 64;
+
+	private static final ThreadLocal<Cancellation> current = new ThreadLocal<>();
+
+	private final long start; // System.nanoTime() at the start
+	private final long deadline;
+	private volatile int rowsDone, rows; // progress at the last check
+
+	/**
+	 * Constructor
+	 *
+	 * @param timeoutNanos
+	 */
+	private Cancellation(long timeoutNanos) {
+		start = System.nanoTime();
+		deadline = start + timeoutNanos;
+	}
+
+	/**
+	 * Start a deadline on the current thread
+	 *
+	 * @param timeout
+	 *            longest time the labeling may run from now
+	 * @param unit
+	 *            unit of the timeout
+	 * @return the deadline, to be finished by the same thread
+	 */
+	public static Cancellation start(long timeout, TimeUnit unit) {
+		Cancellation c = new Cancellation(unit.toNanos(timeout));
+		current.set(c);
+		return c;
+	}
+
+	/**
+	 * Remove the deadline from the current thread
+	 */
+	public void finish() {
+		if (current.get() == this)
+			current.remove();
+	}
+
+	/**
+	 * Record the progress of a pass and stop it if it must stop
+	 *
+	 * @param rowsDone
+	 *            rows of the pass already done
+	 * @param rows
+	 *            rows of the pass
+	 * @throws CancellationException
+	 *             if the thread is interrupted or its deadline is over
+	 */
+	public static void checkpoint(int rowsDone, int rows) {
+		Cancellation c = current.get();
+		if (c != null) {
+			c.rowsDone = rowsDone;
+			c.rows = rows;
+		}
+		if (Thread.currentThread().isInterrupted() || c != null && c.isOver())
+			throw new CancellationException("Labeling stopped after " + rowsDone + " of " + rows + " rows");
+	}
+
+	/**
+	 * Tell if the deadline is over
+	 *
+	 * @return true if the time allowed has run out
+	 */
+	public boolean isOver() {
+		return System.nanoTime() - deadline >= 0;
+	}
+
+	/**
+	 * Rows done getter
+	 *
+	 * @return rows of the pass done at the last check
+	 */
+	public int getRowsDone() {
+		return rowsDone;
+	}
+
+	/**
+	 * Rows getter
+	 *
+	 * @return rows of the pass at the last check, 0 before the first check
+	 */
+	public int getRows() {
+		return rows;
+	}
+
+	/**
+	 * Get the time since the start
+	 *
+	 * @return elapsed time in milliseconds
+	 */
+	public long getElapsedMillis() {
+		return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+	}
+}
@@ -1,36 +1,68 @@
 package imageprocessing;
 import java.awt.Point;
-import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
 import java.util.HashSet;
-import java.util.List;
-import edu.princeton.cs.introcs.Stopwatch;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
 
-//TODO: comment on raw types discouragement and List's removeall slow speed
 /**
- * To manage all coordinates(x,y) of one component
+ * To manage all coordinates(x,y) of one component. Pixels are stored as
+ * horizontal runs [y, xStart, xEnd] in one primitive array, so a pixel costs
+ * no object and consecutive pixels of a row share one run. The limits, the
+ * pixel count and the first and second moments are kept up to date as runs
+ * are added, so they are read without walking the pixels
  * @author Thai Kha Le
  *
  */
-public class Component {
+public class Component implements Iterable<Point> {
+
+	// runs are sorted by y then xStart when normalised, on a packed key of
+	// 21 bits per coordinate when the limits fit in it
+	private static final int BITS = 21;
+	private static final long MASK = (1L << BITS) - 1;
+
+	private int[] runs; // y, xStart, xEnd of each run
+	private int runCount;
+	private boolean normalised; // sorted, no overlapping or touching runs
+
+	// limits are exact at all times; the sums are only exact while
+	// sumsValid, a run that may overlap pixels already stored clears it
+	private int xMin, xMax, yMin, yMax;
+	private int size;
+	private long sumX, sumY, sumXX, sumYY, sumXY;
+	private boolean sumsValid;
 
-	private HashSet<Point> pixels;
-	
 	/**
 	 * Constructor
 	 */
 	public Component() {
-		pixels = new HashSet<>();
+		runs = new int[3 * 4];
+		runCount = 0;
+		normalised = true;
+		sumsValid = true;
 	}
-	
+
 	/**
-	 * Getter for the pixels set
+	 * Get a set of all pixels, built from the runs on each call
 	 * @return pixels set
 	 */
 	public HashSet<Point> getPixels(){
+		HashSet<Point> pixels = new HashSet<>();
+		for (Point p : this)
+			pixels.add(p);
 		return pixels;
 	}
 
-	//TODO: try sortedlist to see if faster
+	/**
+	 * Get the number of pixels of the component
+	 * @return number of pixels
+	 */
+	public int getSize() {
+		validateSums();
+		return size;
+	}
+
 	/**
 	 * Get minimum x,y and maximum x,y of the component
 	 * @return array of minimum x,y and maximum x,y
@@ -38,49 +70,323 @@ public class Component {
 	 *  is still empty when being accessed
 	 */
 	public int[] getLimits() throws IndexOutOfBoundsException {
-		//Stopwatch watch = new Stopwatch();
-		List<Point> pixelsList = new ArrayList<Point>(pixels);
-		int xMax = 0;
-		int xMin = pixelsList.get(0).x;
-		int yMax = 0;
-		int yMin = pixelsList.get(0).y;
-		for(Point p: pixels) {
-			int x = p.x;
-			int y = p.y;
-			
-			if(x < xMin)
-				xMin = x;
-			if(x > xMax)
-				xMax = x;
-			if(y < yMin)
-				yMin = y;
-			if(y > yMax)
-				yMax = y;
-		}
-		//System.out.println(watch.elapsedTime());
+		if (runCount == 0)
+			throw new IndexOutOfBoundsException("Component has no pixel");
 		return (new int[]{xMin,xMax,yMin,yMax});
 	}
-	
+
+	/**
+	 * Get the mean x of the pixels
+	 * @return x of the centroid, NaN if the component is empty
+	 */
+	public double getCentroidX() {
+		validateSums();
+		return (double) sumX / size;
+	}
+
+	/**
+	 * Get the mean y of the pixels
+	 * @return y of the centroid, NaN if the component is empty
+	 */
+	public double getCentroidY() {
+		validateSums();
+		return (double) sumY / size;
+	}
+
+	/**
+	 * Get the variance of the x of the pixels (second central moment)
+	 * @return variance of x, NaN if the component is empty
+	 */
+	public double getVarianceX() {
+		double mean = getCentroidX();
+		return (double) sumXX / size - mean * mean;
+	}
+
+	/**
+	 * Get the variance of the y of the pixels (second central moment)
+	 * @return variance of y, NaN if the component is empty
+	 */
+	public double getVarianceY() {
+		double mean = getCentroidY();
+		return (double) sumYY / size - mean * mean;
+	}
+
+	/**
+	 * Get the covariance of the x and y of the pixels (mixed second central
+	 * moment)
+	 * @return covariance of x and y, NaN if the component is empty
+	 */
+	public double getCovarianceXY() {
+		double meanX = getCentroidX();
+		double meanY = getCentroidY();
+		return (double) sumXY / size - meanX * meanY;
+	}
+
 	/**
 	 * Add a pixel to the component
 	 * @param x
 	 * @param y
 	 */
 	public void addPixel(int x, int y) {
-		if(x >= 0 && y >= 0)
-			pixels.add(new Point(x,y));		
+		addRun(y, x, x);
+	}
+
+	/**
+	 * Add a horizontal run of pixels to the component. Adding runs in row
+	 * order only extends or appends the last run
+	 * @param y row of the run
+	 * @param xStart first x of the run
+	 * @param xEnd last x of the run
+	 */
+	public void addRun(int y, int xStart, int xEnd) {
+		if (y < 0 || xStart < 0 || xEnd < xStart)
+			return;
+		if (runCount > 0 && normalised) {
+			int last = 3 * (runCount - 1);
+			int lastY = runs[last];
+			if (y == lastY && xStart >= runs[last + 1] && xStart <= runs[last + 2] + 1) {
+				if (xEnd > runs[last + 2]) {
+					// only the part beyond the last run is new
+					accumulate(y, runs[last + 2] + 1, xEnd);
+					runs[last + 2] = xEnd;
+				}
+				return;
+			}
+			normalised = y > lastY || (y == lastY && xStart > runs[last + 2] + 1);
+		}
+
+		if (runCount == 0 || normalised || y < yMin || y > yMax || xEnd < xMin || xStart > xMax) {
+			// the run is after all stored runs or outside the limits, so
+			// none of its pixels is stored yet
+			accumulate(y, xStart, xEnd);
+		} else {
+			sumsValid = false;
+		}
+		extendLimits(xStart, xEnd, y, y);
+
+		ensureCapacity(runCount + 1);
+		runs[3 * runCount] = y;
+		runs[3 * runCount + 1] = xStart;
+		runs[3 * runCount + 2] = xEnd;
+		runCount++;
 	}
-	
+
 	/**
-	 * Combine two components (two sets of pixels) together
+	 * Combine two components (two sets of pixels) together. The runs of c are
+	 * appended, overlapping pixels are only resolved when they are next read
 	 * @param c the component to be combined
 	 */
 	public void merge(Component c) {
-		if( c != null && c.getPixels().size() > 0)
-			pixels.addAll(c.getPixels());
+		if (c == null || c == this || c.runCount == 0)
+			return;
+		if (runCount > 0) {
+			int last = 3 * (runCount - 1);
+			normalised = normalised && c.normalised
+					&& (c.runs[0] > runs[last] || (c.runs[0] == runs[last] && c.runs[1] > runs[last + 2] + 1));
+		} else {
+			normalised = c.normalised;
+		}
+
+		if (runCount == 0 || c.yMin > yMax || c.yMax < yMin || c.xMin > xMax || c.xMax < xMin) {
+			// disjoint limits, so no pixel is shared
+			c.validateSums();
+			size += c.size;
+			sumX += c.sumX;
+			sumY += c.sumY;
+			sumXX += c.sumXX;
+			sumYY += c.sumYY;
+			sumXY += c.sumXY;
+		} else {
+			sumsValid = false;
+		}
+		extendLimits(c.xMin, c.xMax, c.yMin, c.yMax);
+
+		ensureCapacity(runCount + c.runCount);
+		System.arraycopy(c.runs, 0, runs, 3 * runCount, 3 * c.runCount);
+		runCount += c.runCount;
+	}
+
+	/**
+	 * Get the number of runs, after sorting them and joining overlapping ones
+	 * @return number of runs
+	 */
+	public int getRunCount() {
+		normalise();
+		return runCount;
+	}
+
+	/**
+	 * Get the row of a run
+	 * @param i index of the run, between 0 and getRunCount() - 1
+	 * @return y of the run
+	 */
+	public int getRunY(int i) {
+		return runs[3 * i];
+	}
+
+	/**
+	 * Get the first x of a run
+	 * @param i index of the run, between 0 and getRunCount() - 1
+	 * @return first x of the run
+	 */
+	public int getRunStart(int i) {
+		return runs[3 * i + 1];
+	}
+
+	/**
+	 * Get the last x of a run
+	 * @param i index of the run, between 0 and getRunCount() - 1
+	 * @return last x of the run
+	 */
+	public int getRunEnd(int i) {
+		return runs[3 * i + 2];
+	}
+
+	/**
+	 * Iterate over the pixels row by row
+	 * @return iterator of the pixels
+	 */
+	@Override
+	public Iterator<Point> iterator() {
+		normalise();
+		return new Iterator<Point>() {
+			private int run = 0;
+			private int x = runCount > 0 ? runs[1] : 0;
+
+			@Override
+			public boolean hasNext() {
+				return run < runCount;
+			}
+
+			@Override
+			public Point next() {
+				if (run >= runCount)
+					throw new NoSuchElementException();
+				Point p = new Point(x, runs[3 * run]);
+				if (x < runs[3 * run + 2]) {
+					x++;
+				} else if (++run < runCount) {
+					x = runs[3 * run + 1];
+				}
+				return p;
+			}
+		};
+	}
+
+	/**
+	 * Widen the limits to include a rectangle
+	 * @param xFrom
+	 * @param xTo
+	 * @param yFrom
+	 * @param yTo
+	 */
+	private void extendLimits(int xFrom, int xTo, int yFrom, int yTo) {
+		if (runCount == 0) {
+			xMin = xFrom;
+			xMax = xTo;
+			yMin = yFrom;
+			yMax = yTo;
+			return;
+		}
+		if (xFrom < xMin)
+			xMin = xFrom;
+		if (xTo > xMax)
+			xMax = xTo;
+		if (yFrom < yMin)
+			yMin = yFrom;
+		if (yTo > yMax)
+			yMax = yTo;
+	}
+
+	/**
+	 * Add the pixels of a run to the count and the sums
+	 * @param y row of the run
+	 * @param xStart first x of the run
+	 * @param xEnd last x of the run
+	 */
+	private void accumulate(int y, int xStart, int xEnd) {
+		long n = xEnd - xStart + 1;
+		long sx = ((long) xStart + xEnd) * n / 2;
+		size += n;
+		sumX += sx;
+		sumY += y * n;
+		sumXX += LabelStatistics.squares(xStart, xEnd);
+		sumYY += (long) y * y * n;
+		sumXY += y * sx;
+	}
+
+	/**
+	 * Recompute the count and the sums from the runs if a run that may
+	 * overlap has been added
+	 */
+	private void validateSums() {
+		if (sumsValid)
+			return;
+		normalise();
+		size = 0;
+		sumX = sumY = sumXX = sumYY = sumXY = 0;
+		for (int i = 0; i < runCount; i++)
+			accumulate(runs[3 * i], runs[3 * i + 1], runs[3 * i + 2]);
+		sumsValid = true;
+	}
+
+	/**
+	 * Grow the runs array to hold at least n runs
+	 * @param n number of runs
+	 */
+	private void ensureCapacity(int n) {
+		if (3 * n > runs.length)
+			runs = Arrays.copyOf(runs, Math.max(3 * n, 2 * runs.length));
+	}
+
+	/**
+	 * Sort the runs by row and x and join the ones that overlap or touch
+	 */
+	private void normalise() {
+		if (normalised)
+			return;
+		int[] sorted;
+		if (xMax <= MASK && yMax <= MASK) {
+			long[] keys = new long[runCount];
+			for (int i = 0; i < runCount; i++) {
+				keys[i] = (long) runs[3 * i] << (2 * BITS) | (long) runs[3 * i + 1] << BITS | runs[3 * i + 2];
+			}
+			Arrays.sort(keys);
+			sorted = new int[3 * runCount];
+			for (int i = 0; i < runCount; i++) {
+				sorted[3 * i] = (int) (keys[i] >>> (2 * BITS));
+				sorted[3 * i + 1] = (int) ((keys[i] >>> BITS) & MASK);
+				sorted[3 * i + 2] = (int) (keys[i] & MASK);
+			}
+		} else {
+			// coordinates too large for the packed key
+			Integer[] order = new Integer[runCount];
+			for (int i = 0; i < runCount; i++)
+				order[i] = i;
+			Arrays.sort(order, Comparator.<Integer> comparingInt(i -> runs[3 * i])
+					.thenComparingInt(i -> runs[3 * i + 1]));
+			sorted = new int[3 * runCount];
+			for (int i = 0; i < runCount; i++)
+				System.arraycopy(runs, 3 * order[i], sorted, 3 * i, 3);
+		}
+
+		int n = 0;
+		for (int i = 0; i < runCount; i++) {
+			int y = sorted[3 * i];
+			int xStart = sorted[3 * i + 1];
+			int xEnd = sorted[3 * i + 2];
+			int last = 3 * (n - 1);
+			if (n > 0 && runs[last] == y && xStart <= runs[last + 2] + 1) {
+				if (xEnd > runs[last + 2])
+					runs[last + 2] = xEnd;
+			} else {
+				runs[3 * n] = y;
+				runs[3 * n + 1] = xStart;
+				runs[3 * n + 2] = xEnd;
+				n++;
+			}
+		}
+		runCount = n;
+		normalised = true;
 	}
-	
-//	public List<Point> getPixelsList() {
-//		return new ArrayList<>(pixels);
-//	}
 }
@@ -10,8 +10,8 @@ public interface ComponentImage {
 	 * Run the scanning algorithm and complete the data-structure that stores
 	 * the components within a time interval. If an TimeoutException is thrown,
 	 * which indicates that executing time has exceeded the given allowed time,
-	 * the whole program will be shutdown (this is handled by whatever "driver"
-	 * is using an instance of the processor class).
+	 * the scanning has stopped and it is up to whatever "driver" is using an
+	 * instance of the processor class to handle it.
 	 *
 	 * @throws Exception
 	 *             including TimeoutException and other Exception types
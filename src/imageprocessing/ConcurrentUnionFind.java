@@ -0,0 +1,138 @@
+package imageprocessing;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Lock-free union-find that many threads can use at once, in the style of
+ * Anderson and Woll. Parents live in an AtomicIntegerArray; a root is only
+ * linked with a compare-and-set that fails if another thread linked it
+ * first, and find() splits paths with compare-and-set as well. Roots are
+ * linked by index, the bigger root under the smaller one, so no cycle can
+ * form whatever the interleaving
+ *
+ * @author Thai Kha Le
+ *
+ */
+public class ConcurrentUnionFind implements GrowableUnionFind {
+
+	private final AtomicIntegerArray parent;
+	private final AtomicInteger n; // number of elements, element 0 included
+
+	/**
+	 * Constructor
+	 *
+	 * @param capacity
+	 *            largest number of elements, element 0 included. The array
+	 *            cannot grow while other threads use it
+	 */
+	public ConcurrentUnionFind(int capacity) {
+		parent = new AtomicIntegerArray(Math.max(capacity, 1));
+		n = new AtomicInteger(1); // element 0 is the background
+	}
+
+	/**
+	 * Add a new component that only contains itself
+	 *
+	 * @return the new element, starting from 1
+	 * @throws IllegalStateException
+	 *             if the capacity is used up
+	 */
+	@Override
+	public int makeSet() {
+		int p = n.getAndIncrement();
+		if (p >= parent.length())
+			throw new IllegalStateException("Union-find capacity " + parent.length() + " exceeded");
+		parent.set(p, p);
+		return p;
+	}
+
+	/**
+	 * Get the number of elements handed out so far
+	 *
+	 * @return number of elements, element 0 included
+	 */
+	public int size() {
+		return Math.min(n.get(), parent.length());
+	}
+
+	/**
+	 * Union two components. If the root to link changes under us, the roots
+	 * are looked up again and the link is retried
+	 *
+	 * @param p
+	 * @param q
+	 */
+	@Override
+	public void union(int p, int q) {
+		while (true) {
+			p = find(p);
+			q = find(q);
+			if (p == q)
+				return;
+			if (p < q) {
+				int t = p;
+				p = q;
+				q = t;
+			}
+			if (parent.compareAndSet(p, p, q))
+				return;
+		}
+	}
+
+	/**
+	 * Chase the root of the component, kept for callers of the recursive
+	 * version
+	 *
+	 * @param p
+	 * @param depth
+	 *            initially 1
+	 * @return an array of size 2, including the root of p and the depth
+	 */
+	@Override
+	public int[] findRootR(int p, int depth) {
+		for (int i = p, par; (par = parent.get(i)) != i; i = par)
+			depth++;
+		return new int[] { find(p), depth };
+	}
+
+	/**
+	 * Chase the root of the component. Every element on the way is pointed at
+	 * its grandparent if nobody changed it meanwhile (path splitting)
+	 *
+	 * @param p
+	 * @return root of component p at the time it was reached
+	 */
+	@Override
+	public int find(int p) {
+		while (true) {
+			int par = parent.get(p);
+			if (par == p)
+				return p;
+			int grand = parent.get(par);
+			if (par != grand)
+				parent.compareAndSet(p, par, grand);
+			p = par;
+		}
+	}
+
+	/**
+	 * Check if two components are connected. The answer is only final once
+	 * both roots have been seen as roots at the same time
+	 *
+	 * @param p
+	 * @param q
+	 * @return boolean value if they are connected
+	 */
+	@Override
+	public boolean connected(int p, int q) {
+		while (true) {
+			p = find(p);
+			q = find(q);
+			if (p == q)
+				return true;
+			if (parent.get(p) == p)
+				return false;
+		}
+	}
+}
@@ -1,17 +1,17 @@
 package imageprocessing;
 
 import java.awt.Color;
-import java.awt.Point;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.Objects;
 import java.util.Random;
-import java.util.concurrent.Callable;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.Future;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.TimeoutException;
 import edu.princeton.cs.introcs.Picture;
 import edu.princeton.cs.introcs.Stopwatch;
 
@@ -21,19 +21,24 @@ import edu.princeton.cs.introcs.Stopwatch;
  * @author Thai Kha Le
  *
  */
-public class ConnectedComponentImage implements ComponentImage, UnionFind {
+public class ConnectedComponentImage implements ComponentImage {
 
+	private static final int THRESHOLD = 128; // luminance below it is dark in mode 0 and 1
 	private static Color[] colors = new Color[] { Color.BLUE, Color.CYAN, Color.GREEN, Color.MAGENTA, Color.ORANGE,
 			Color.PINK, Color.YELLOW };
-	private ConnectedComponentImage processor;
 	private double time = 0;
-	private Picture picture, pic; // original picture; binarized picture
-	private Color foreground;
-	private int hei, wid, count, currentLabel, mode;
-	private int[] labels, equi; // equivalence table
+	private BufferedImage image; // original picture, as decoded
+	private Labeler labeler;
+	private Threshold threshold;
+	private int hei, wid, count, mode;
+	private int[] labels;
 	private HashMap<Integer, Component> components;
-	private Component background;
-	private boolean readyToUse = false;
+	private LabelStatistics statistics; // per-label features, statistics-only mode
+	private boolean pixelSets; // false in statistics-only mode
+	private volatile boolean readyToUse = false;
+	private String path; // canonical path of the file read, null if none
+	private long modified; // last modification time of that file
+	private long timeoutMillis = ProcessingService.DEFAULT_TIMEOUT_MILLIS;
 
 	/**
 	 * Initialise fields
@@ -42,24 +47,105 @@ public class ConnectedComponentImage implements ComponentImage, UnionFind {
 	 *            file location of type String
 	 */
 	public ConnectedComponentImage(String fileLocation, int mode) throws Exception {
-		picture = new Picture(fileLocation);
-		pic = new Picture(picture);
-		wid = picture.width();
-		hei = picture.height();
-		labels = new int[hei * wid];
-		equi = new int[hei * wid];
-		currentLabel = 1;
+		this(fileLocation, mode, new TwoPassLabeler());
+	}
+
+	/**
+	 * Initialise fields
+	 * 
+	 * @param fileLocation
+	 *            file location of type String
+	 * @param mode
+	 *            0 if brighter is a foreground, 1 if darker is a foreground
+	 * @param labeler
+	 *            the labeling engine used by the scan
+	 */
+	public ConnectedComponentImage(String fileLocation, int mode, Labeler labeler) throws Exception {
+		this(fileLocation, mode, labeler, true);
+	}
+
+	/**
+	 * Initialise fields
+	 * 
+	 * @param fileLocation
+	 *            file location of type String
+	 * @param mode
+	 *            0 if brighter is a foreground, 1 if darker is a foreground
+	 * @param labeler
+	 *            the labeling engine used by the scan
+	 * @param pixelSets
+	 *            false to only collect the statistics of each component
+	 *            (area, limits, moments) without building Component pixel
+	 *            sets, see getStatistics()
+	 */
+	public ConnectedComponentImage(String fileLocation, int mode, Labeler labeler, boolean pixelSets)
+			throws Exception {
+		// Mode 0: brighter is a foreground, Mode 1: darker is a foreground
+		this(fileLocation, new FixedThreshold(THRESHOLD, mode != 0), labeler, pixelSets);
+	}
+
+	/**
+	 * Initialise fields
+	 * 
+	 * @param fileLocation
+	 *            file location of type String
+	 * @param threshold
+	 *            decides which pixels are the foreground
+	 */
+	public ConnectedComponentImage(String fileLocation, Threshold threshold) throws Exception {
+		this(fileLocation, threshold, new TwoPassLabeler(), true);
+	}
+
+	/**
+	 * Initialise fields
+	 * 
+	 * @param fileLocation
+	 *            file location of type String
+	 * @param threshold
+	 *            decides which pixels are the foreground
+	 * @param labeler
+	 *            the labeling engine used by the scan
+	 * @param pixelSets
+	 *            false to only collect the statistics of each component
+	 *            (area, limits, moments) without building Component pixel
+	 *            sets, see getStatistics()
+	 */
+	public ConnectedComponentImage(String fileLocation, Threshold threshold, Labeler labeler, boolean pixelSets)
+			throws Exception {
+		this(PictureRaster.decode(fileLocation), threshold, labeler, pixelSets);
+		File file = new File(fileLocation);
+		if (file.isFile()) {
+			path = file.getCanonicalPath();
+			modified = file.lastModified();
+		}
+	}
+
+	/**
+	 * Initialise fields from an image already decoded. The image is kept as
+	 * it is and binarized straight from its raster, pictures of it are only
+	 * made by getPicture() and identifyComponentImage()
+	 * 
+	 * @param image
+	 *            the original picture, it must not change afterwards
+	 * @param threshold
+	 *            decides which pixels are the foreground
+	 * @param labeler
+	 *            the labeling engine used by the scan
+	 * @param pixelSets
+	 *            false to only collect the statistics of each component
+	 *            (area, limits, moments) without building Component pixel
+	 *            sets, see getStatistics()
+	 */
+	public ConnectedComponentImage(BufferedImage image, Threshold threshold, Labeler labeler, boolean pixelSets) {
+		this.image = image;
+		wid = image.getWidth();
+		hei = image.getHeight();
 		count = 0;
 		components = new HashMap<>();
-		background = new Component();
-		this.mode = (mode == 0) ? 0 : 1; // Mode 0: brighter is a foreground,
-											// Mode 1: darker is a foreground
-		foreground = (mode == 0) ? Color.white : Color.black; // after
-																// binarizing,
-																// foreground is
-																// either white
-																// or black
-		processor = this; // "this" is a reference value
+		this.threshold = threshold;
+		this.mode = threshold.isDarkForeground() ? 1 : 0;
+		this.labeler = labeler;
+		this.pixelSets = pixelSets;
 	}
 
 	/**
@@ -89,6 +175,15 @@ public class ConnectedComponentImage implements ComponentImage, UnionFind {
 		return mode;
 	}
 
+	/**
+	 * Threshold getter
+	 * 
+	 * @return the strategy that decides which pixels are the foreground
+	 */
+	public Threshold getThreshold() {
+		return threshold;
+	}
+
 	/**
 	 * Time getter
 	 * 
@@ -104,147 +199,178 @@ public class ConnectedComponentImage implements ComponentImage, UnionFind {
 
 	/**
 	 * Run the two-pass scanning and complete the components field within a time
-	 * interval. If an TimeoutException is thrown, which indicates that
-	 * executing time has exceeded the given allowed time, the whole program
-	 * will be shutdown (this is handled by whatever "driver" is using an
-	 * instance of this class).
+	 * interval, on the shared ProcessingService. If a
+	 * ProcessingTimeoutException is thrown, which indicates that executing
+	 * time has exceeded the allowed time, see setTimeout(), the scan has
+	 * stopped and it is up to whatever "driver" is using an instance of this
+	 * class to handle it. The exception tells how far the scan went.
 	 * 
 	 * @throws Exception
-	 *             including TimeoutException and other Exception types
+	 *             including ProcessingTimeoutException and other Exception
+	 *             types
 	 */
 	@Override
 	public void setup() throws Exception {
-		Stopwatch watch = new Stopwatch();
-		// Create a Callable object, give it to an ExecutorService, execute and
-		// retrieve the result
-		Callable<ConnectedComponentImage> s = new MyTask(this);
-		final ExecutorService service = Executors.newSingleThreadExecutor();
+		setup(ProcessingService.shared());
+	}
+
+	/**
+	 * Run the two-pass scanning and complete the components field on a
+	 * given service, waiting for the result. Called from a job of the same
+	 * service, the scan runs on the calling thread
+	 * 
+	 * @param service
+	 *            the pool that runs the scan
+	 * @throws Exception
+	 *             including ProcessingTimeoutException and other Exception
+	 *             types
+	 */
+	public void setup(ProcessingService service) throws Exception {
 		try {
-			// the result is wrapped up by a Future object
-			processor = service.submit(s).get(20, TimeUnit.SECONDS); // 20
-																		// seconds
-																		// is
-																		// allowed
-		} finally {
-			service.shutdown(); // shutdown the ExecutorService after executing
+			service.submit(this, timeoutMillis, TimeUnit.MILLISECONDS).get();
+		} catch (ExecutionException e) {
+			// throw what the scan threw, a TimeoutException in particular
+			if (e.getCause() instanceof Exception)
+				throw (Exception) e.getCause();
+			throw e;
 		}
-		readyToUse = true;
-		time = watch.elapsedTime();
 	}
 
 	/**
-	 * Local class to create a Callable object
+	 * Set the time the scan may take before setup() gives up
 	 * 
-	 * @author Thai Kha Le
-	 *
+	 * @param timeout
+	 *            the allowed time
+	 * @param unit
+	 *            unit of the timeout
 	 */
-	private class MyTask implements Callable<ConnectedComponentImage> {
-		private ConnectedComponentImage c;
-
-		/**
-		 * Constructor
-		 * 
-		 * @param c
-		 *            ConnectedComponentImage instance
-		 */
-		public MyTask(ConnectedComponentImage c) {
-			this.c = c;
-		}
+	public void setTimeout(long timeout, TimeUnit unit) {
+		timeoutMillis = unit.toMillis(timeout);
+	}
 
-		/**
-		 * Attempt to execute the defined tasks when invoked
-		 */
-		@Override
-		public ConnectedComponentImage call() throws Exception {
-			c.twopassProcess();
-			//c.completeDB();
-			//c.readyToUse = true;
-			return c;
+	/**
+	 * Run the scan on the calling thread and time it, the ProcessingService
+	 * calls it on one of its threads. A scan stopped by its deadline drops
+	 * what it made so far, so that a timed out processor holds no arrays
+	 * and can be set up again. When a ResultCache is shared and the
+	 * threshold is fixed, the result of pixels scanned before is read from
+	 * the cache instead and the scan does not run
+	 */
+	synchronized void process() {
+		Stopwatch watch = new Stopwatch();
+		try {
+			ResultCache cache = ResultCache.shared();
+			String key = null;
+			if (cache != null && threshold instanceof FixedThreshold)
+				key = ResultCache.key(image, (FixedThreshold) threshold, labeler.getConnectivity());
+			if (key == null || !loadResult(cache, key)) {
+				twopassProcess();
+				if (key != null)
+					storeResult(cache, key);
+			}
+		} catch (CancellationException e) {
+			labels = null;
+			statistics = null;
+			components.clear();
+			count = 0;
+			throw e;
 		}
+		time = watch.elapsedTime();
+		readyToUse = true;
 	}
 
 	/**
-	 * The two-pass scan
+	 * The two-pass scan. The image is binarized once, into a packed mask
+	 * made row by row if the labeler reads the bits and into a byte mask
+	 * otherwise, so that no mask is made only to be unpacked again. The
+	 * labeler runs both passes on it and the components field is completed
+	 * from the labels in one sweep
 	 */
 	private void twopassProcess() {
-		// First pass
-		for (int x = 0; x < wid; x++) {
-			for (int y = 0; y < hei; y++) {
-				Color nColor = lumi(pic, x, y);
-				pic.set(x, y, nColor);
-				if (nColor.equals(foreground)) {
-					int id = y * wid + x;
-					int idAbove = (y - 1) * wid + x;
-					int idLeft = y * wid + x - 1;
-
-					// For labelling, check if would go out of picture's
-					// boundary
-					boolean yAbove = y - 1 >= 0;
-					boolean xLeft = x - 1 >= 0;
-
-					int labelAbove = yAbove ? labels[idAbove] : -1;
-					int labelLeft = xLeft ? labels[idLeft] : -1;
-
-					boolean bothForeground = yAbove && xLeft && (labelAbove != -1 && labelLeft != -1)
-							&& pic.get(x, y - 1).equals(foreground) && pic.get(x - 1, y).equals(foreground);
-					boolean aboveForeground = yAbove && (labelAbove != -1) && pic.get(x, y - 1).equals(foreground);
-					boolean leftForeground = xLeft && (labelLeft != -1) && pic.get(x - 1, y).equals(foreground);
-
-					if (bothForeground && labelAbove != labelLeft) { // check
-						// both
-						// above
-						// and
-						// left
-						int smallLabel = labelAbove < labelLeft ? labelAbove : labelLeft;
-						int bigLabel = labelAbove > labelLeft ? labelAbove : labelLeft;
-						labels[id] = smallLabel;
-						components.get(smallLabel).addPixel(x, y);
-						union(smallLabel, bigLabel);
-					} else if (bothForeground && labelAbove == labelLeft) {
-						labels[id] = labelAbove;
-						components.get(labelAbove).addPixel(x, y);
-					} else if (aboveForeground && labelAbove != 0) { // check
-																		// above
-						labels[id] = labelAbove;
-						components.get(labelAbove).addPixel(x, y);
-					} else if (leftForeground && labelLeft != 0) { // check left
-						labels[id] = labelLeft;
-						components.get(labelLeft).addPixel(x, y);
-					} else {
-						labels[id] = currentLabel;
-						equi[currentLabel] = currentLabel;
-
-						Component c = new Component();
-						c.addPixel(x, y);
-						components.put(currentLabel, c);
-
-						currentLabel++;
-						count++;
-					}
-				}
+		BitMask bits = null;
+		byte[] mask = null;
+		if (labeler.readsBits())
+			bits = threshold.binarizeBits(image);
+		else
+			mask = threshold.binarize(image);
+		labels = new int[hei * wid];
 
-				// Store background
-				else if (mode == 1) {
-					background.addPixel(x, y);
-				}
+		// an engine keeps the state of its scan in its fields, so processors
+		// that share one take turns
+		synchronized (labeler) {
+			if (!pixelSets) {
+				statistics = new LabelStatistics(64);
+				count = bits != null ? labeler.label(bits, labels, statistics)
+						: labeler.label(mask, wid, hei, labels, statistics);
+				return;
 			}
+			count = bits != null ? labeler.label(bits, labels) : labeler.label(mask, wid, hei, labels);
 		}
+		completeComponents();
+	}
 
-		// Second pass
-		for (int x = 0; x < wid; x++) {
-			for (int y = 0; y < hei; y++) {
-				int labelOfPixel = labels[y * wid + x];
-				if (labelOfPixel != 0) {
-					int rootLabel = findRootR(labelOfPixel, 1)[0];
-					labels[y * wid + x] = rootLabel;
-					equi[labelOfPixel] = rootLabel;
-					
-					//Complete the components field
-					if(rootLabel != labelOfPixel) {
-						Component c = components.get(rootLabel);
-						c.merge(components.get(labelOfPixel));
-						components.remove(labelOfPixel);
+	/**
+	 * Take the result of the same pixels from the cache
+	 *
+	 * @param cache
+	 * @param key
+	 *            the key of the image and the settings of the scan
+	 * @return true if the cache held the result
+	 */
+	private boolean loadResult(ResultCache cache, String key) {
+		ResultCache.Result result = cache.load(key, wid, hei);
+		if (result == null)
+			return false;
+		labels = result.getLabels();
+		count = result.getCount();
+		if (pixelSets)
+			completeComponents();
+		else
+			statistics = result.getStatistics();
+		return true;
+	}
+
+	/**
+	 * Keep the result of the scan in the cache. The cache only saves time,
+	 * so a result that cannot be written is made again next time
+	 *
+	 * @param cache
+	 * @param key
+	 *            the key of the image and the settings of the scan
+	 */
+	private void storeResult(ResultCache cache, String key) {
+		try {
+			cache.store(key, wid, hei, count, labels, pixelSets ? null : statistics);
+		} catch (IOException e) {
+			// not kept
+		}
+	}
+
+	/**
+	 * Complete the components field from the labels in one sweep
+	 */
+	private void completeComponents() {
+		// Complete the components field, each row is cut into runs of pixels
+		// sharing a label. The labels are 1 to count, so the components are
+		// looked up in an array rather than the map. The background is label
+		// 0 of the labels array and is not stored again
+		Component[] byLabel = new Component[count + 1];
+		for (int y = 0; y < hei; y++) {
+			int row = y * wid;
+			int x = 0;
+			while (x < wid) {
+				int labelOfRun = labels[row + x];
+				int xStart = x;
+				while (x < wid && labels[row + x] == labelOfRun)
+					x++;
+				if (labelOfRun != 0) {
+					Component c = byLabel[labelOfRun];
+					if (c == null) {
+						c = new Component();
+						byLabel[labelOfRun] = c;
+						components.put(labelOfRun, c);
 					}
+					c.addRun(y, xStart, x - 1);
 				}
 			}
 		}
@@ -273,6 +399,21 @@ public class ConnectedComponentImage implements ComponentImage, UnionFind {
 		return components;
 	}
 
+	/**
+	 * Getter for the statistics of the components, only collected in
+	 * statistics-only mode. Each component is one of the labels returned by
+	 * LabelStatistics.getLabels()
+	 * 
+	 * @return per-label statistics, or null if pixel sets are built instead
+	 * @throws Exception
+	 *             if setup() failed
+	 */
+	public LabelStatistics getStatistics() throws Exception {
+		if (!readyToUse)
+			setup();
+		return statistics;
+	}
+
 	/**
 	 * Get a set of all components
 	 * 
@@ -300,7 +441,8 @@ public class ConnectedComponentImage implements ComponentImage, UnionFind {
 	}
 
 	/**
-	 * Returns a picture with each object updated to a random colour.
+	 * Returns a picture with each object updated to a random colour, new
+	 * colours on each call, so it is not cached.
 	 * 
 	 * @return a picture object with all components coloured.
 	 * @throws Exception
@@ -309,55 +451,36 @@ public class ConnectedComponentImage implements ComponentImage, UnionFind {
 	public Picture colourComponentImage() throws Exception {
 		if (!readyToUse)
 			setup();
-		Picture coloredPic = new Picture(pic);
-		Random randomGenerator = new Random();
-		Iterator<Component> i = components.values().iterator();
-		while (i.hasNext()) {
-			Color col = colors[randomGenerator.nextInt(colors.length)];
-
-			Iterator<Point> pixels = i.next().getPixels().iterator();
-			while (pixels.hasNext()) {
-				Point p = pixels.next();
-				coloredPic.set(p.x, p.y, col);
-			}
-		}
-
-		//Make sure background is always black 
-		if (mode == 1) {
-			Iterator<Point> backgroundPixels = background.getPixels().iterator();
-			while (backgroundPixels.hasNext()) {
-				Point b = backgroundPixels.next();
-				coloredPic.set(b.x, b.y, Color.BLACK);
-			}
-		}
-		return coloredPic;
-
+		// the background is always black
+		int[] palette = LabelRenderer.randomPalette(count, Color.BLACK.getRGB(), colors, new Random());
+		return LabelRenderer.render(labels, wid, hei, palette);
 	}
 
 	/**
-	 * Returns the original picture
+	 * Returns a copy of the original picture, made from the decoded image on
+	 * each call
 	 * 
 	 * @return original picture
 	 */
 	public Picture getPicture() {
-		return new Picture(picture);
+		return PictureRaster.toPicture(image);
 	}
 
 	/**
-	 * Returns a binarised version of the original image
+	 * Returns a binarised version of the original image. Its pixels may come
+	 * from the PictureCache, the picture is the caller's own.
 	 * 
 	 * @return a black and white picture object
 	 * @throws Exception
 	 *             if setup() failed
 	 */
 	public Picture binaryComponentImage() throws Exception {
-		if (!readyToUse)
-			setup();
-		return new Picture(pic);
+		return derived(Output.BINARY, this::binaryPicture);
 	}
 
 	/**
-	 * Returns the binarized image with each object bounded by a red box.
+	 * Returns the binarized image with each object bounded by a red box. Its
+	 * pixels may come from the PictureCache, the picture is the caller's own.
 	 * 
 	 * @return a black and white picture object with all components surrounded
 	 *         by a red box
@@ -366,22 +489,48 @@ public class ConnectedComponentImage implements ComponentImage, UnionFind {
 	 */
 	@Override
 	public Picture highlightComponentImage() throws Exception {
-		if (!readyToUse)
-			setup();
-		return boundingBox(new Picture(pic));
+		return derived(Output.HIGHLIGHT, () -> boundingBox(binaryPicture()));
 	}
 
 	/**
-	 * Returns the original image with each object bounded by a red box.
+	 * Returns the original image with each object bounded by a red box. Its
+	 * pixels may come from the PictureCache, the picture is the caller's own.
 	 * 
 	 * @return a picture object with all components surrounded by a red box
 	 * @throws Exception
 	 *             if setup() failed
 	 */
 	public Picture identifyComponentImage() throws Exception {
-		if (!readyToUse)
-			setup();
-		return boundingBox(new Picture(picture));
+		return derived(Output.IDENTIFY, () -> boundingBox(PictureRaster.toPicture(image)));
+	}
+
+	/**
+	 * Get a derived picture from the shared PictureCache, drawn on the first
+	 * request. Processors of the same version of a file with the same fixed
+	 * threshold and connectivity share the pixels, each request gets a new
+	 * picture of them. The pictures of other processors are drawn on every
+	 * request
+	 * 
+	 * @param output
+	 *            which picture
+	 * @param maker
+	 *            makes the picture from the scan
+	 * @return the picture
+	 * @throws Exception
+	 *             if setup() failed
+	 */
+	private Picture derived(Output output, PictureCache.Maker maker) throws Exception {
+		PictureCache.Maker scanned = () -> {
+			if (!readyToUse)
+				setup();
+			return maker.make();
+		};
+		if (path == null || !(threshold instanceof FixedThreshold))
+			return scanned.make();
+		FixedThreshold fixed = (FixedThreshold) threshold;
+		OutputKey key = new OutputKey(path, modified, fixed.getLevel(), fixed.isDarkForeground(),
+				labeler.getConnectivity(), output);
+		return PictureCache.shared().get(key, scanned);
 	}
 
 	/**
@@ -392,108 +541,96 @@ public class ConnectedComponentImage implements ComponentImage, UnionFind {
 	 * @return red boxes drawn picture
 	 */
 	private Picture boundingBox(Picture hPic) {
+		if (!pixelSets) {
+			for (int label : statistics.getLabels())
+				drawBox(hPic, statistics.getLimits(label));
+			return hPic;
+		}
 		Iterator<Component> i = components.values().iterator();
 		while (i.hasNext()) {
-			int[] limits = i.next().getLimits();
-
-			int xMin = limits[0];
-			int xMax = limits[1];
-			int yMin = limits[2];
-			int yMax = limits[3];
-			
-			if (!(xMin > xMax || yMin > yMax)) {
-				for (int k = xMin; k <= xMax; k++) {
-					hPic.set(k, yMax, Color.RED);
-					hPic.set(k, yMin, Color.RED);
-				}
-				for (int k = yMin; k <= yMax; k++) {
-					hPic.set(xMin, k, Color.RED);
-					hPic.set(xMax, k, Color.RED);
-				}
-			}
+			drawBox(hPic, i.next().getLimits());
 		}
 		return hPic;
 	}
 
 	/**
-	 * Union two components
+	 * Draw a red box on a picture
 	 * 
-	 * @param p
-	 * @param q
+	 * @param hPic
+	 *            the picture object to draw upon
+	 * @param limits
+	 *            array of minimum x,y and maximum x,y of the box
 	 */
-	@Override
-	public void union(int p, int q) {
-		if (connected(p, q))
-			return;
-
-		int[] pRoot = findRootR(p, 1);
-		int[] qRoot = findRootR(q, 1);
-
-		if (pRoot[1] < qRoot[1]) {
-			equi[pRoot[0]] = qRoot[0];
-		} else {
-			equi[qRoot[0]] = pRoot[0];
+	private void drawBox(Picture hPic, int[] limits) {
+		int xMin = limits[0];
+		int xMax = limits[1];
+		int yMin = limits[2];
+		int yMax = limits[3];
+
+		if (!(xMin > xMax || yMin > yMax)) {
+			for (int k = xMin; k <= xMax; k++) {
+				hPic.set(k, yMax, Color.RED);
+				hPic.set(k, yMin, Color.RED);
+			}
+			for (int k = yMin; k <= yMax; k++) {
+				hPic.set(xMin, k, Color.RED);
+				hPic.set(xMax, k, Color.RED);
+			}
 		}
-
-		count--;
 	}
 
-	// @Override
-	// public int[] findRoot(int p) {
-	// int depth = 1;
-	// int par = equi[p];
-	// while (equi[par] != par) {
-	// equi[par] = equi[equi[par]];
-	// par = equi[par];
-	// depth++;
-	// }
-	// return (new int[] { par, depth });
-	// }
-
 	/**
-	 * Chase the root of the component
+	 * Render the labels into black and white pixels, the foreground is
+	 * black in mode 1 and white in mode 0
 	 * 
-	 * @param p
-	 * @param depth
-	 *            initially 1
-	 * @return an array of size 2, 
-	 * including the root of p and the depth
+	 * @return a new black and white picture
 	 */
-	@Override
-	public int[] findRootR(int p, int depth) {
-		if (equi[p] == p)
-			return (new int[] { p, depth });
-		else {
-			equi[p] = equi[equi[p]];
-			p = equi[p];
-			return findRootR(p, ++depth);
-		}
+	private Picture binaryPicture() {
+		int foreground = (mode == 1 ? Color.black : Color.white).getRGB();
+		int other = (mode == 1 ? Color.white : Color.black).getRGB();
+		return LabelRenderer.renderBinary(labels, wid, hei, foreground, other);
 	}
 
 	/**
-	 * Check if two components are connected
-	 * 
-	 * @param p
-	 * @param q
-	 * @return boolean value if they are connected
+	 * The pictures derived from a scan
 	 */
-	@Override
-	public boolean connected(int p, int q) {
-		return findRootR(p, 1)[0] == findRootR(q, 1)[0];
+	private enum Output {
+		BINARY, HIGHLIGHT, IDENTIFY
 	}
 
-
 	/**
-	 * Get the monochrome luminance of given point on a picture
-	 * 
-	 * @param pic
-	 *            the picture
-	 * @param x
-	 * @param y
-	 * @return the monochrome luminance
-	 */
-	private Color lumi(Picture pic, int x, int y) {
-		double val = Luminance.lum(pic.get(x, y));
-		return val < 128 ? Color.black : Color.white;
+	 * Key of a derived picture in the PictureCache: the version of the file
+	 * and the settings of the scan
+	 */
+	private static final class OutputKey {
+		private final String path;
+		private final long modified;
+		private final int level;
+		private final boolean dark;
+		private final Connectivity connectivity;
+		private final Output output;
+
+		OutputKey(String path, long modified, int level, boolean dark, Connectivity connectivity, Output output) {
+			this.path = path;
+			this.modified = modified;
+			this.level = level;
+			this.dark = dark;
+			this.connectivity = connectivity;
+			this.output = output;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (!(o instanceof OutputKey))
+				return false;
+			OutputKey k = (OutputKey) o;
+			return path.equals(k.path) && modified == k.modified && level == k.level && dark == k.dark
+					&& connectivity == k.connectivity && output == k.output;
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hash(path, modified, level, dark, connectivity, output);
+		}
 	}
 }
@@ -0,0 +1,13 @@
+package imageprocessing;
+
+/**
+ * Neighbourhood that decides which pixels are connected. With FOUR only the
+ * pixels that share an edge are connected, with EIGHT the pixels that share a
+ * corner are connected as well
+ *
+ * @author Thai Kha Le
+ *
+ */
+public enum Connectivity {
+	FOUR, EIGHT
+}
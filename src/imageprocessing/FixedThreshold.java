@@ -0,0 +1,54 @@
+package imageprocessing;
+
+import java.awt.image.BufferedImage;
+
+/**
+ * Global threshold at a fixed luminance, the processor's historical mode 0
+ * and mode 1 at 128
+ *
+ * @author Thai Kha Le
+ *
+ */
+public class FixedThreshold implements Threshold {
+
+	private final int level;
+	private final boolean darkForeground;
+
+	/**
+	 * Constructor
+	 *
+	 * @param level
+	 *            pixels with a luminance below it are dark
+	 * @param darkForeground
+	 *            true if the dark pixels are the foreground, false if the
+	 *            bright ones are
+	 */
+	public FixedThreshold(int level, boolean darkForeground) {
+		this.level = level;
+		this.darkForeground = darkForeground;
+	}
+
+	/**
+	 * Level getter
+	 *
+	 * @return the luminance that splits dark and bright
+	 */
+	public int getLevel() {
+		return level;
+	}
+
+	@Override
+	public byte[] binarize(BufferedImage image) {
+		return Binarizer.binarize(image, level, darkForeground);
+	}
+
+	@Override
+	public BitMask binarizeBits(BufferedImage image) {
+		return Binarizer.pack(image, level, darkForeground);
+	}
+
+	@Override
+	public boolean isDarkForeground() {
+		return darkForeground;
+	}
+}
@@ -0,0 +1,25 @@
+package imageprocessing;
+
+/**
+ * Union-find whose elements are made one at a time, as a labeler hands out
+ * provisional labels. Element 0 stands for the background and is never
+ * handed out by makeSet()
+ * 
+ * @author Thai Kha Le
+ *
+ */
+public interface GrowableUnionFind extends UnionFind {
+
+	/**
+	 * Add a new component that only contains itself
+	 * @return the new element, starting from 1
+	 */
+	int makeSet();
+
+	/**
+	 * Chase the root of the component without allocating
+	 * @param p
+	 * @return root of component p
+	 */
+	int find(int p);
+}
@@ -0,0 +1,101 @@
+package imageprocessing;
+
+import java.awt.Color;
+import java.util.Random;
+
+import edu.princeton.cs.introcs.Picture;
+
+/**
+ * Renders pictures straight from a label map. Every pixel takes the colour
+ * of its label in a palette indexed by label, written into the int raster of
+ * a new picture in one sequential pass, so no Color object is made and no
+ * Picture.set is called per pixel, and the components are never walked
+ *
+ * @author Thai Kha Le
+ *
+ */
+public final class LabelRenderer {
+
+	private LabelRenderer() {
+	}
+
+	/**
+	 * Make a palette that gives each component a colour picked at random and
+	 * the background a colour of its own
+	 *
+	 * @param count
+	 *            number of components, labeled 1 to count
+	 * @param background
+	 *            ARGB colour of label 0
+	 * @param colours
+	 *            the colours to pick from
+	 * @param random
+	 *            source of the picks
+	 * @return ARGB colour of each label, count + 1 of them
+	 */
+	public static int[] randomPalette(int count, int background, Color[] colours, Random random) {
+		int[] argb = new int[colours.length];
+		for (int i = 0; i < colours.length; i++)
+			argb[i] = colours[i].getRGB();
+		int[] palette = new int[count + 1];
+		palette[0] = background;
+		for (int l = 1; l <= count; l++)
+			palette[l] = argb[random.nextInt(argb.length)];
+		return palette;
+	}
+
+	/**
+	 * Render every pixel in the colour of its label
+	 *
+	 * @param labels
+	 *            row-major labels, index y * wid + x
+	 * @param wid
+	 *            width of the image
+	 * @param hei
+	 *            height of the image
+	 * @param palette
+	 *            ARGB colour of each label, indexed by label
+	 * @return a new picture
+	 */
+	public static Picture render(int[] labels, int wid, int hei, int[] palette) {
+		Picture picture = new Picture(wid, hei);
+		int[] pixels = PictureRaster.pixels(picture);
+		boolean inPlace = pixels != null;
+		if (!inPlace)
+			pixels = new int[wid * hei];
+		for (int id = 0; id < pixels.length; id++)
+			pixels[id] = palette[labels[id]];
+		if (!inPlace)
+			PictureRaster.writeRGB(picture, pixels);
+		return picture;
+	}
+
+	/**
+	 * Render the foreground, every pixel with a label, in one colour and the
+	 * background in another
+	 *
+	 * @param labels
+	 *            row-major labels, index y * wid + x
+	 * @param wid
+	 *            width of the image
+	 * @param hei
+	 *            height of the image
+	 * @param foreground
+	 *            ARGB colour of the labeled pixels
+	 * @param background
+	 *            ARGB colour of the pixels labeled 0
+	 * @return a new picture
+	 */
+	public static Picture renderBinary(int[] labels, int wid, int hei, int foreground, int background) {
+		Picture picture = new Picture(wid, hei);
+		int[] pixels = PictureRaster.pixels(picture);
+		boolean inPlace = pixels != null;
+		if (!inPlace)
+			pixels = new int[wid * hei];
+		for (int id = 0; id < pixels.length; id++)
+			pixels[id] = labels[id] != 0 ? foreground : background;
+		if (!inPlace)
+			PictureRaster.writeRGB(picture, pixels);
+		return picture;
+	}
+}
@@ -0,0 +1,415 @@
+package imageprocessing;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Feature accumulators of every label, kept in parallel primitive arrays
+ * indexed by label. A labeler adds each pixel to its provisional label and
+ * folds the accumulators of two labels together when it unions them, so once
+ * labeling is done only the root labels hold pixels and no pixel is stored
+ *
+ * @author Thai Kha Le
+ *
+ */
+public class LabelStatistics {
+
+	private int[] area, xMin, xMax, yMin, yMax;
+	private long[] sumX, sumY, sumXX, sumYY, sumXY;
+
+	/**
+	 * Constructor
+	 *
+	 * @param capacity
+	 *            initial number of labels, label 0 included
+	 */
+	public LabelStatistics(int capacity) {
+		capacity = Math.max(capacity, 2);
+		area = new int[capacity];
+		xMin = new int[capacity];
+		xMax = new int[capacity];
+		yMin = new int[capacity];
+		yMax = new int[capacity];
+		sumX = new long[capacity];
+		sumY = new long[capacity];
+		sumXX = new long[capacity];
+		sumYY = new long[capacity];
+		sumXY = new long[capacity];
+	}
+
+	/**
+	 * Get the number of labels that fit without growing
+	 *
+	 * @return the capacity, label 0 included
+	 */
+	public int capacity() {
+		return area.length;
+	}
+
+	/**
+	 * Start the accumulators of a new label, growing the arrays if needed
+	 *
+	 * @param label
+	 *            the new label
+	 */
+	public void reset(int label) {
+		if (label >= area.length)
+			grow(Math.max(label + 1, 2 * area.length));
+		area[label] = 0;
+		xMin[label] = Integer.MAX_VALUE;
+		xMax[label] = Integer.MIN_VALUE;
+		yMin[label] = Integer.MAX_VALUE;
+		yMax[label] = Integer.MIN_VALUE;
+		sumX[label] = sumY[label] = sumXX[label] = sumYY[label] = sumXY[label] = 0;
+	}
+
+	/**
+	 * Add a pixel to a label
+	 *
+	 * @param label
+	 *            the label, started by reset()
+	 * @param x
+	 * @param y
+	 */
+	public void add(int label, int x, int y) {
+		area[label]++;
+		if (x < xMin[label])
+			xMin[label] = x;
+		if (x > xMax[label])
+			xMax[label] = x;
+		if (y < yMin[label])
+			yMin[label] = y;
+		if (y > yMax[label])
+			yMax[label] = y;
+		sumX[label] += x;
+		sumY[label] += y;
+		sumXX[label] += (long) x * x;
+		sumYY[label] += (long) y * y;
+		sumXY[label] += (long) x * y;
+	}
+
+	/**
+	 * Add a horizontal run of pixels to a label, in constant time whatever
+	 * its length
+	 *
+	 * @param label
+	 *            the label, started by reset()
+	 * @param y
+	 *            row of the run
+	 * @param xStart
+	 *            first x of the run
+	 * @param xEnd
+	 *            last x of the run
+	 */
+	public void addRun(int label, int y, int xStart, int xEnd) {
+		long n = xEnd - xStart + 1;
+		long sx = ((long) xStart + xEnd) * n / 2;
+		area[label] += n;
+		if (xStart < xMin[label])
+			xMin[label] = xStart;
+		if (xEnd > xMax[label])
+			xMax[label] = xEnd;
+		if (y < yMin[label])
+			yMin[label] = y;
+		if (y > yMax[label])
+			yMax[label] = y;
+		sumX[label] += sx;
+		sumY[label] += y * n;
+		sumXX[label] += squares(xStart, xEnd);
+		sumYY[label] += (long) y * y * n;
+		sumXY[label] += y * sx;
+	}
+
+	/**
+	 * Move the accumulators of one label into another, called when the two
+	 * labels are unioned. The label folded from is left empty
+	 *
+	 * @param from
+	 *            the label that stops being a root
+	 * @param to
+	 *            the root that both labels now share
+	 */
+	public void fold(int from, int to) {
+		area[to] += area[from];
+		if (xMin[from] < xMin[to])
+			xMin[to] = xMin[from];
+		if (xMax[from] > xMax[to])
+			xMax[to] = xMax[from];
+		if (yMin[from] < yMin[to])
+			yMin[to] = yMin[from];
+		if (yMax[from] > yMax[to])
+			yMax[to] = yMax[from];
+		sumX[to] += sumX[from];
+		sumY[to] += sumY[from];
+		sumXX[to] += sumXX[from];
+		sumYY[to] += sumYY[from];
+		sumXY[to] += sumXY[from];
+		reset(from);
+	}
+
+	/**
+	 * Move the accumulators of the roots to their final labels, once the
+	 * labeler has numbered the components 1 to count. Labels that are not
+	 * roots hold no pixel and are dropped, so the capacity becomes count + 1
+	 *
+	 * @param map
+	 *            final label of every root, indexed by root
+	 * @param count
+	 *            number of components
+	 */
+	public void renumber(int[] map, int count) {
+		LabelStatistics moved = new LabelStatistics(count + 1);
+		for (int label = 1, n = Math.min(map.length, area.length); label < n; label++) {
+			int to = map[label];
+			if (to == 0 || area[label] == 0)
+				continue;
+			moved.area[to] = area[label];
+			moved.xMin[to] = xMin[label];
+			moved.xMax[to] = xMax[label];
+			moved.yMin[to] = yMin[label];
+			moved.yMax[to] = yMax[label];
+			moved.sumX[to] = sumX[label];
+			moved.sumY[to] = sumY[label];
+			moved.sumXX[to] = sumXX[label];
+			moved.sumYY[to] = sumYY[label];
+			moved.sumXY[to] = sumXY[label];
+		}
+		area = moved.area;
+		xMin = moved.xMin;
+		xMax = moved.xMax;
+		yMin = moved.yMin;
+		yMax = moved.yMax;
+		sumX = moved.sumX;
+		sumY = moved.sumY;
+		sumXX = moved.sumXX;
+		sumYY = moved.sumYY;
+		sumXY = moved.sumXY;
+	}
+
+	/**
+	 * Get the labels that hold pixels, which are the roots once labeling is
+	 * done
+	 *
+	 * @return the labels in increasing order
+	 */
+	public int[] getLabels() {
+		int[] labels = new int[count()];
+		for (int label = 1, i = 0; label < area.length; label++) {
+			if (area[label] > 0)
+				labels[i++] = label;
+		}
+		return labels;
+	}
+
+	/**
+	 * Get the number of labels that hold pixels
+	 *
+	 * @return the number of components once labeling is done
+	 */
+	public int count() {
+		int count = 0;
+		for (int label = 1; label < area.length; label++) {
+			if (area[label] > 0)
+				count++;
+		}
+		return count;
+	}
+
+	/**
+	 * Get the number of pixels of a label
+	 *
+	 * @param label
+	 * @return number of pixels
+	 */
+	public int getArea(int label) {
+		return label < area.length ? area[label] : 0;
+	}
+
+	/**
+	 * Get minimum x,y and maximum x,y of a label
+	 *
+	 * @param label
+	 * @return array of minimum x,y and maximum x,y
+	 * @throws IndexOutOfBoundsException
+	 *             if the label holds no pixel
+	 */
+	public int[] getLimits(int label) throws IndexOutOfBoundsException {
+		if (getArea(label) == 0)
+			throw new IndexOutOfBoundsException("Label " + label + " has no pixel");
+		return (new int[] { xMin[label], xMax[label], yMin[label], yMax[label] });
+	}
+
+	/**
+	 * Get the mean x of the pixels of a label
+	 *
+	 * @param label
+	 * @return x of the centroid
+	 */
+	public double getCentroidX(int label) {
+		return (double) sumX[label] / area[label];
+	}
+
+	/**
+	 * Get the mean y of the pixels of a label
+	 *
+	 * @param label
+	 * @return y of the centroid
+	 */
+	public double getCentroidY(int label) {
+		return (double) sumY[label] / area[label];
+	}
+
+	/**
+	 * Get the variance of the x of the pixels of a label
+	 *
+	 * @param label
+	 * @return variance of x
+	 */
+	public double getVarianceX(int label) {
+		double mean = getCentroidX(label);
+		return (double) sumXX[label] / area[label] - mean * mean;
+	}
+
+	/**
+	 * Get the variance of the y of the pixels of a label
+	 *
+	 * @param label
+	 * @return variance of y
+	 */
+	public double getVarianceY(int label) {
+		double mean = getCentroidY(label);
+		return (double) sumYY[label] / area[label] - mean * mean;
+	}
+
+	/**
+	 * Get the covariance of the x and y of the pixels of a label
+	 *
+	 * @param label
+	 * @return covariance of x and y
+	 */
+	public double getCovarianceXY(int label) {
+		return (double) sumXY[label] / area[label] - getCentroidX(label) * getCentroidY(label);
+	}
+
+	/**
+	 * Sum of the squares of a run, from^2 + ... + to^2, also used by
+	 * Component. With n = to - from + 1 it is n from^2 + from n (n - 1) +
+	 * (n - 1) n (2n - 1) / 6, each term at most the sum and the division
+	 * done before the last multiply, so nothing overflows unless the sum
+	 * itself does
+	 *
+	 * @param from
+	 *            first x of the run
+	 * @param to
+	 *            last x of the run, at least from
+	 * @return the sum
+	 */
+	static long squares(long from, long to) {
+		long n = to - from + 1;
+		long pairs = (n - 1) * n / 2;
+		// (n - 1) n (2n - 1) is a multiple of 3, so pairs or 2n - 1 is
+		long tail = pairs % 3 == 0 ? pairs / 3 * (2 * n - 1) : (2 * n - 1) / 3 * pairs;
+		return n * from * from + 2 * from * pairs + tail;
+	}
+
+	/**
+	 * Add the pixels of final labels, one run of a label at a time. A label
+	 * is started by its first run
+	 *
+	 * @param labels
+	 *            row-major labels, 0 for the background
+	 * @param wid
+	 *            width of the image
+	 * @param hei
+	 *            height of the image
+	 */
+	void addLabels(int[] labels, int wid, int hei) {
+		for (int y = 0; y < hei; y++) {
+			for (int x = 0, row = y * wid; x < wid;) {
+				int label = labels[row + x];
+				int start = x;
+				while (x < wid && labels[row + x] == label)
+					x++;
+				if (label == 0)
+					continue;
+				if (getArea(label) == 0)
+					reset(label);
+				addRun(label, y, start, x - 1);
+			}
+		}
+	}
+
+	/**
+	 * Write the accumulators of the labels 1 to count
+	 *
+	 * @param out
+	 * @param count
+	 *            number of components
+	 * @throws IOException
+	 */
+	void write(DataOutput out, int count) throws IOException {
+		for (int label = 1; label <= count; label++) {
+			out.writeInt(getArea(label));
+			if (getArea(label) == 0)
+				continue;
+			out.writeInt(xMin[label]);
+			out.writeInt(xMax[label]);
+			out.writeInt(yMin[label]);
+			out.writeInt(yMax[label]);
+			out.writeLong(sumX[label]);
+			out.writeLong(sumY[label]);
+			out.writeLong(sumXX[label]);
+			out.writeLong(sumYY[label]);
+			out.writeLong(sumXY[label]);
+		}
+	}
+
+	/**
+	 * Read the accumulators written by write()
+	 *
+	 * @param in
+	 * @param count
+	 *            number of components
+	 * @return the statistics of the labels 1 to count
+	 * @throws IOException
+	 */
+	static LabelStatistics read(DataInput in, int count) throws IOException {
+		LabelStatistics stats = new LabelStatistics(count + 1);
+		for (int label = 1; label <= count; label++) {
+			stats.area[label] = in.readInt();
+			if (stats.area[label] == 0)
+				continue;
+			stats.xMin[label] = in.readInt();
+			stats.xMax[label] = in.readInt();
+			stats.yMin[label] = in.readInt();
+			stats.yMax[label] = in.readInt();
+			stats.sumX[label] = in.readLong();
+			stats.sumY[label] = in.readLong();
+			stats.sumXX[label] = in.readLong();
+			stats.sumYY[label] = in.readLong();
+			stats.sumXY[label] = in.readLong();
+		}
+		return stats;
+	}
+
+	/**
+	 * Grow all arrays
+	 *
+	 * @param capacity
+	 *            the new number of labels
+	 */
+	private void grow(int capacity) {
+		area = Arrays.copyOf(area, capacity);
+		xMin = Arrays.copyOf(xMin, capacity);
+		xMax = Arrays.copyOf(xMax, capacity);
+		yMin = Arrays.copyOf(yMin, capacity);
+		yMax = Arrays.copyOf(yMax, capacity);
+		sumX = Arrays.copyOf(sumX, capacity);
+		sumY = Arrays.copyOf(sumY, capacity);
+		sumXX = Arrays.copyOf(sumXX, capacity);
+		sumYY = Arrays.copyOf(sumYY, capacity);
+		sumXY = Arrays.copyOf(sumXY, capacity);
+	}
+}
@@ -0,0 +1,118 @@
+package imageprocessing;
+
+/**
+ * The interface of a labeling engine. An engine scans a binary mask and gives
+ * every foreground pixel the label of the component it belongs to. A long
+ * scan calls Cancellation.checkpoint() every few rows, so it may stop with a
+ * CancellationException once its thread is interrupted or its deadline is
+ * over; the labels are left incomplete then. An engine may keep the state of
+ * a scan in its fields, so one engine must not label two masks at once: a
+ * ConnectedComponentImage locks its engine while it scans, so processors
+ * that share one run their scans one after another
+ * 
+ * @author Thai Kha Le
+ *
+ */
+public interface Labeler {
+
+	/**
+	 * Connectivity getter. This default is 4-connectivity, engines with
+	 * another neighbourhood override it
+	 * 
+	 * @return the neighbourhood of a pixel
+	 */
+	default Connectivity getConnectivity() {
+		return Connectivity.FOUR;
+	}
+
+	/**
+	 * Label the foreground pixels of a binary mask
+	 * 
+	 * @param mask
+	 *            row-major mask of size wid * hei, 1 for a foreground pixel and
+	 *            0 for a background pixel
+	 * @param wid
+	 *            width of the image
+	 * @param hei
+	 *            height of the image
+	 * @param labels
+	 *            row-major array of size wid * hei to be filled, background
+	 *            pixels get 0 and all pixels of one component get the same
+	 *            label. The components are numbered 1 to count, so a label
+	 *            can index an array of count + 1
+	 * @return the number of components
+	 */
+	int label(byte[] mask, int wid, int hei, int[] labels);
+
+	/**
+	 * Label the foreground pixels of a binary mask and accumulate the
+	 * features of every component. Once this returns, the labels that hold
+	 * pixels in stats are the labels written into the labels array. This
+	 * default sweeps the final labels once, engines that fold the
+	 * accumulators while they union labels override it
+	 * 
+	 * @param mask
+	 *            row-major mask of size wid * hei, 1 for a foreground pixel and
+	 *            0 for a background pixel
+	 * @param wid
+	 *            width of the image
+	 * @param hei
+	 *            height of the image
+	 * @param labels
+	 *            row-major array of size wid * hei to be filled
+	 * @param stats
+	 *            empty accumulators to fill, indexed by label
+	 * @return the number of components
+	 */
+	default int label(byte[] mask, int wid, int hei, int[] labels, LabelStatistics stats) {
+		int count = label(mask, wid, hei, labels);
+		stats.addLabels(labels, wid, hei);
+		return count;
+	}
+
+	/**
+	 * Tell if the engine reads a packed mask without unpacking it first. A
+	 * caller that holds the pixels can then pack them row by row, otherwise
+	 * it should hand over a byte mask rather than pack one that is unpacked
+	 * again
+	 * 
+	 * @return true if label(BitMask, ...) reads the bits, this default is
+	 *         false
+	 */
+	default boolean readsBits() {
+		return false;
+	}
+
+	/**
+	 * Label the foreground pixels of a packed mask. This default unpacks the
+	 * mask, engines that read the bits directly override it
+	 * 
+	 * @param mask
+	 *            the packed mask
+	 * @param labels
+	 *            row-major array of size wid * hei to be filled
+	 * @return the number of components
+	 */
+	default int label(BitMask mask, int[] labels) {
+		return label(mask.toBytes(), mask.getWidth(), mask.getHeight(), labels);
+	}
+
+	/**
+	 * Label the foreground pixels of a packed mask and accumulate the
+	 * features of every component. This default labels the mask with
+	 * label(BitMask, int[]) and sweeps the final labels once
+	 * 
+	 * @param mask
+	 *            the packed mask
+	 * @param labels
+	 *            row-major array of size wid * hei to be filled
+	 * @param stats
+	 *            empty accumulators to fill, indexed by label
+	 * @return the number of components
+	 */
+	default int label(BitMask mask, int[] labels, LabelStatistics stats) {
+		int count = label(mask, labels);
+		stats.addLabels(labels, mask.getWidth(), mask.getHeight());
+		return count;
+	}
+}
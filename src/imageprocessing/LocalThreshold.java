@@ -0,0 +1,136 @@
+package imageprocessing;
+
+import java.awt.image.BufferedImage;
+
+/**
+ * Adaptive threshold computed from the window around each pixel, for
+ * unevenly lit pictures. The sums of the luminance and of its square are
+ * kept in summed-area tables, so the mean and the deviation of any window
+ * cost four lookups whatever its size
+ *
+ * @author Thai Kha Le
+ *
+ */
+public class LocalThreshold implements Threshold {
+
+	/**
+	 * How the threshold of a pixel is derived from its window. MEAN is dark
+	 * below the mean lowered by k (Bradley and Roth), SAUVOLA is dark below
+	 * mean * (1 + k * (deviation / 128 - 1))
+	 */
+	public enum Method {
+		MEAN, SAUVOLA
+	}
+
+	private final Method method;
+	private final int window;
+	private final double k;
+	private final boolean darkForeground;
+
+	/**
+	 * Constructor, with k 0.15 for MEAN and 0.34 for SAUVOLA
+	 *
+	 * @param method
+	 *            how the threshold is derived from the window
+	 * @param window
+	 *            side of the square window centred on each pixel
+	 * @param darkForeground
+	 *            true if the dark pixels are the foreground, false if the
+	 *            bright ones are
+	 */
+	public LocalThreshold(Method method, int window, boolean darkForeground) {
+		this(method, window, method == Method.MEAN ? 0.15 : 0.34, darkForeground);
+	}
+
+	/**
+	 * Constructor
+	 *
+	 * @param method
+	 *            how the threshold is derived from the window
+	 * @param window
+	 *            side of the square window centred on each pixel
+	 * @param k
+	 *            sensitivity of the method
+	 * @param darkForeground
+	 *            true if the dark pixels are the foreground, false if the
+	 *            bright ones are
+	 */
+	public LocalThreshold(Method method, int window, double k, boolean darkForeground) {
+		this.method = method;
+		this.window = Math.max(window, 1);
+		this.k = k;
+		this.darkForeground = darkForeground;
+	}
+
+	@Override
+	public byte[] binarize(BufferedImage image) {
+		return binarize(PictureRaster.readRGB(image), image.getWidth(), image.getHeight());
+	}
+
+	/**
+	 * Binarize packed RGB pixels
+	 *
+	 * @param rgb
+	 *            row-major array of packed RGB values
+	 * @param wid
+	 *            width of the image
+	 * @param hei
+	 *            height of the image
+	 * @return row-major mask, 1 for a foreground pixel and 0 otherwise
+	 */
+	public byte[] binarize(int[] rgb, int wid, int hei) {
+		// summed-area tables with a row and a column of zeros in front, entry
+		// (x, y) holds the sum over all pixels above and to the left of it
+		int stride = wid + 1;
+		boolean squares = method == Method.SAUVOLA;
+		long[] sum = new long[stride * (hei + 1)];
+		long[] sumSquares = squares ? new long[sum.length] : null;
+		for (int y = 0; y < hei; y++) {
+			long rowSum = 0, rowSquares = 0;
+			int at = (y + 1) * stride + 1;
+			for (int x = 0, id = y * wid; x < wid; x++, id++, at++) {
+				long luma = Binarizer.luma(rgb[id]);
+				rowSum += luma;
+				sum[at] = sum[at - stride] + rowSum;
+				if (squares) {
+					rowSquares += luma * luma;
+					sumSquares[at] = sumSquares[at - stride] + rowSquares;
+				}
+			}
+		}
+
+		byte[] mask = new byte[wid * hei];
+		int half = window / 2;
+		double range = 128.0 * Binarizer.SCALE; // largest deviation of the luminance
+		for (int y = 0; y < hei; y++) {
+			int top = Math.max(y - half, 0) * stride;
+			int bottom = Math.min(y + half + 1, hei) * stride;
+			int rows = (bottom - top) / stride;
+			for (int x = 0, id = y * wid; x < wid; x++, id++) {
+				int left = Math.max(x - half, 0);
+				int right = Math.min(x + half + 1, wid);
+				int n = rows * (right - left);
+				long s = sum[bottom + right] - sum[bottom + left] - sum[top + right] + sum[top + left];
+				double mean = (double) s / n;
+				double level;
+				if (squares) {
+					long q = sumSquares[bottom + right] - sumSquares[bottom + left] - sumSquares[top + right]
+							+ sumSquares[top + left];
+					double deviation = Math.sqrt(Math.max((double) q / n - mean * mean, 0));
+					level = mean * (1 + k * (deviation / range - 1));
+				} else {
+					level = mean * (1 - k);
+				}
+				boolean dark = Binarizer.luma(rgb[id]) < level;
+				if (dark == darkForeground)
+					mask[id] = 1;
+			}
+		}
+		return mask;
+	}
+
+	@Override
+	public boolean isDarkForeground() {
+		return darkForeground;
+	}
+}
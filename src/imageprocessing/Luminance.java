@@ -23,6 +23,14 @@ public class Luminance {
         return .299*r + .587*g + .114*b;
     }
 
+    // return the monochrome luminance of given packed rgb value
+    public static double lum(int rgb) {
+        int r = (rgb >> 16) & 0xFF;
+        int g = (rgb >>  8) & 0xFF;
+        int b =  rgb        & 0xFF;
+        return .299*r + .587*g + .114*b;
+    }
+
     // return a gray version of this Color
     public static Color toGray(Color color) {
         int y = (int) (Math.round(lum(color)));   // round to nearest int
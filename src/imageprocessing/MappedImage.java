@@ -0,0 +1,279 @@
+package imageprocessing;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Binary PGM (P5), binary PBM (P4) or raw 8-bit grayscale image mapped into
+ * memory with FileChannel.map. The samples are binarized straight from the
+ * mapping row by row, so nothing is decoded into an ARGB picture and the
+ * pixels stay in the page cache instead of the heap. A mapping holds at most
+ * 2 GB, so a larger file is mapped in several bands of whole rows.
+ *
+ * A gray sample is turned into its 8-bit level and looked up in a table made
+ * once per threshold by Binarizer, so a gray pixel is binarized exactly as
+ * the same pixel of a decoded picture. In a PBM a set bit is black
+ *
+ * @author Thai Kha Le
+ *
+ */
+public class MappedImage {
+
+	private enum Format {
+		GRAY, BITS
+	}
+
+	private final Format format;
+	private final int wid, hei;
+	private final int maxval; // largest gray sample, 1 for a PBM
+	private final int bytesPerSample;
+	private final long rowBytes;
+	private final int rowsPerBand; // rows of each mapping
+	private final MappedByteBuffer[] bands;
+
+	private int lookupThreshold = -1; // threshold of the lookup table
+	private boolean lookupDark;
+	private byte[] lookup; // foreground bit of each sample
+
+	/**
+	 * Constructor
+	 *
+	 * @param file
+	 * @param format
+	 * @param wid
+	 * @param hei
+	 * @param maxval
+	 * @param offset
+	 *            position of the first sample in the file
+	 * @throws IOException
+	 *             if the file is shorter than its pixels
+	 */
+	private MappedImage(File file, Format format, int wid, int hei, int maxval, long offset) throws IOException {
+		if (wid <= 0 || hei <= 0)
+			throw new IOException("Bad size " + wid + " x " + hei + " in " + file);
+		if (maxval <= 0 || maxval > 65535)
+			throw new IOException("Bad maximum gray value " + maxval + " in " + file);
+		this.format = format;
+		this.wid = wid;
+		this.hei = hei;
+		this.maxval = maxval;
+		bytesPerSample = maxval < 256 ? 1 : 2;
+		rowBytes = format == Format.BITS ? (wid + 7) / 8 : (long) wid * bytesPerSample;
+		if (rowBytes > Integer.MAX_VALUE)
+			throw new IOException("Rows too long in " + file);
+		rowsPerBand = (int) Math.min(hei, Integer.MAX_VALUE / rowBytes);
+		bands = new MappedByteBuffer[(hei + rowsPerBand - 1) / rowsPerBand];
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			if (channel.size() < offset + rowBytes * hei)
+				throw new IOException("File too short for " + wid + " x " + hei + ": " + file);
+			// the mappings stay valid once the channel is closed
+			for (int i = 0; i < bands.length; i++) {
+				int rows = Math.min(rowsPerBand, hei - i * rowsPerBand);
+				bands[i] = channel.map(MapMode.READ_ONLY, offset + i * rowsPerBand * rowBytes, rows * rowBytes);
+			}
+		}
+	}
+
+	/**
+	 * Map a binary PGM or PBM file
+	 *
+	 * @param file
+	 * @return the mapped image
+	 * @throws IOException
+	 *             if the file cannot be read or is not a P5 or P4 file
+	 */
+	public static MappedImage open(File file) throws IOException {
+		ByteBuffer head = ByteBuffer.allocate(1024);
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			while (head.hasRemaining() && channel.read(head) > 0)
+				;
+		}
+		head.flip();
+		if (head.remaining() < 2 || head.get() != 'P')
+			throw new IOException("Not a PGM or PBM file: " + file);
+		byte magic = head.get();
+		if (magic != '5' && magic != '4')
+			throw new IOException("Only binary PGM (P5) and PBM (P4) are supported: " + file);
+		int wid = headerNumber(head, file);
+		int hei = headerNumber(head, file);
+		int maxval = magic == '5' ? headerNumber(head, file) : 1;
+		// a single whitespace separates the header from the samples
+		if (!head.hasRemaining())
+			throw new IOException("Truncated header: " + file);
+		head.get();
+		return new MappedImage(file, magic == '5' ? Format.GRAY : Format.BITS, wid, hei, maxval, head.position());
+	}
+
+	/**
+	 * Map a headerless file of 8-bit gray samples, row after row
+	 *
+	 * @param file
+	 * @param wid
+	 *            width of the image
+	 * @param hei
+	 *            height of the image
+	 * @return the mapped image
+	 * @throws IOException
+	 *             if the file cannot be read or is shorter than wid * hei
+	 */
+	public static MappedImage openRaw(File file, int wid, int hei) throws IOException {
+		return new MappedImage(file, Format.GRAY, wid, hei, 255, 0);
+	}
+
+	/**
+	 * Width getter
+	 *
+	 * @return width of the image
+	 */
+	public int getWidth() {
+		return wid;
+	}
+
+	/**
+	 * Height getter
+	 *
+	 * @return height of the image
+	 */
+	public int getHeight() {
+		return hei;
+	}
+
+	/**
+	 * Binarize one row straight from the mapping
+	 *
+	 * @param y
+	 *            the row
+	 * @param threshold
+	 *            pixels with a luminance below it are dark
+	 * @param darkForeground
+	 *            true if the dark pixels are the foreground, false if the
+	 *            bright ones are
+	 * @param mask
+	 *            mask to write, 1 for a foreground pixel and 0 otherwise
+	 * @param offset
+	 *            index of the first pixel of the row in mask
+	 */
+	public void binarizeRow(int y, int threshold, boolean darkForeground, byte[] mask, int offset) {
+		byte[] table = lookup(threshold, darkForeground);
+		MappedByteBuffer band = bands[y / rowsPerBand];
+		int at = (int) ((y % rowsPerBand) * rowBytes);
+		if (format == Format.BITS) {
+			for (int x = 0; x < wid; x++)
+				mask[offset + x] = table[(band.get(at + (x >>> 3)) >>> (7 - (x & 7))) & 1];
+		} else if (bytesPerSample == 1) {
+			for (int x = 0; x < wid; x++)
+				mask[offset + x] = table[band.get(at + x) & 0xFF];
+		} else {
+			for (int x = 0; x < wid; x++)
+				mask[offset + x] = table[band.getShort(at + 2 * x) & 0xFFFF];
+		}
+	}
+
+	/**
+	 * Binarize a band of rows
+	 *
+	 * @param rowFrom
+	 *            first row of the band
+	 * @param rowTo
+	 *            row after the last row of the band
+	 * @param threshold
+	 *            pixels with a luminance below it are dark
+	 * @param darkForeground
+	 *            true if the dark pixels are the foreground, false if the
+	 *            bright ones are
+	 * @return row-major mask of the band, 1 for a foreground pixel and 0
+	 *         otherwise
+	 */
+	public byte[] binarize(int rowFrom, int rowTo, int threshold, boolean darkForeground) {
+		byte[] mask = new byte[(rowTo - rowFrom) * wid];
+		for (int y = rowFrom; y < rowTo; y++)
+			binarizeRow(y, threshold, darkForeground, mask, (y - rowFrom) * wid);
+		return mask;
+	}
+
+	/**
+	 * Binarize the whole image into a packed mask, one row at a time so that
+	 * no byte mask of the whole image is made
+	 *
+	 * @param threshold
+	 *            pixels with a luminance below it are dark
+	 * @param darkForeground
+	 *            true if the dark pixels are the foreground, false if the
+	 *            bright ones are
+	 * @return the packed mask
+	 */
+	public BitMask binarize(int threshold, boolean darkForeground) {
+		BitMask bits = new BitMask(wid, hei);
+		byte[] row = new byte[wid];
+		for (int y = 0; y < hei; y++) {
+			binarizeRow(y, threshold, darkForeground, row, 0);
+			bits.packRow(y, row, 0);
+		}
+		return bits;
+	}
+
+	/**
+	 * Get the foreground bit of every sample for a threshold, made by
+	 * binarizing the gray of each sample once
+	 *
+	 * @param threshold
+	 * @param darkForeground
+	 * @return table indexed by sample
+	 */
+	private byte[] lookup(int threshold, boolean darkForeground) {
+		if (threshold == lookupThreshold && darkForeground == lookupDark)
+			return lookup;
+		int[] grays = new int[maxval + 1];
+		for (int sample = 0; sample <= maxval; sample++) {
+			// a PBM bit is black when set
+			int level = format == Format.BITS ? 255 * (1 - sample) : (sample * 255 + maxval / 2) / maxval;
+			grays[sample] = 0xFF000000 | level << 16 | level << 8 | level;
+		}
+		lookup = Binarizer.binarize(grays, threshold, darkForeground);
+		lookupThreshold = threshold;
+		lookupDark = darkForeground;
+		return lookup;
+	}
+
+	/**
+	 * Read the next number of a header, skipping whitespace and comments
+	 *
+	 * @param head
+	 *            the start of the file
+	 * @param file
+	 * @return the number
+	 * @throws IOException
+	 *             if there is no number
+	 */
+	private static int headerNumber(ByteBuffer head, File file) throws IOException {
+		int c = -1;
+		while (head.hasRemaining()) {
+			c = head.get();
+			if (c == '#') {
+				while (head.hasRemaining() && c != '\n' && c != '\r')
+					c = head.get();
+			} else if (c != ' ' && c != '\t' && c != '\n' && c != '\r') {
+				break;
+			}
+		}
+		if (c < '0' || c > '9')
+			throw new IOException("Bad header: " + file);
+		long n = 0;
+		while (c >= '0' && c <= '9') {
+			n = 10 * n + c - '0';
+			if (n > Integer.MAX_VALUE)
+				throw new IOException("Bad header: " + file);
+			if (!head.hasRemaining())
+				throw new IOException("Truncated header: " + file);
+			c = head.get();
+		}
+		// the character after the number is left to the caller
+		head.position(head.position() - 1);
+		return (int) n;
+	}
+}
@@ -0,0 +1,104 @@
+package imageprocessing;
+
+import java.awt.image.BufferedImage;
+
+/**
+ * Global threshold chosen by Otsu's method. One pass builds the histogram of
+ * the luminance, the level that maximises the variance between the dark and
+ * the bright class is found on the 256 bins, and a second pass binarizes
+ *
+ * @author Thai Kha Le
+ *
+ */
+public class OtsuThreshold implements Threshold {
+
+	private final boolean darkForeground;
+
+	/**
+	 * Constructor
+	 *
+	 * @param darkForeground
+	 *            true if the dark pixels are the foreground, false if the
+	 *            bright ones are
+	 */
+	public OtsuThreshold(boolean darkForeground) {
+		this.darkForeground = darkForeground;
+	}
+
+	@Override
+	public byte[] binarize(BufferedImage image) {
+		return Binarizer.binarize(image, level(histogram(image)), darkForeground);
+	}
+
+	@Override
+	public BitMask binarizeBits(BufferedImage image) {
+		return Binarizer.pack(image, level(histogram(image)), darkForeground);
+	}
+
+	@Override
+	public boolean isDarkForeground() {
+		return darkForeground;
+	}
+
+	/**
+	 * Count the pixels of each luminance
+	 *
+	 * @param rgb
+	 *            packed RGB values
+	 * @return 256 bins, bin g counts the luminances from g included to g + 1
+	 */
+	public static int[] histogram(int[] rgb) {
+		int[] histogram = new int[256];
+		for (int i = 0; i < rgb.length; i++)
+			histogram[Binarizer.luma(rgb[i]) / Binarizer.SCALE]++;
+		return histogram;
+	}
+
+	/**
+	 * Count the pixels of each luminance of an image, read one row at a time
+	 *
+	 * @param image
+	 *            the image
+	 * @return 256 bins, bin g counts the luminances from g included to g + 1
+	 */
+	public static int[] histogram(BufferedImage image) {
+		return Binarizer.histogram(image);
+	}
+
+	/**
+	 * Find the level that maximises the variance between the bins below it
+	 * and the bins from it on
+	 *
+	 * @param histogram
+	 *            256 bins of luminance
+	 * @return the level, 128 if all pixels fall in one bin
+	 */
+	public static int level(int[] histogram) {
+		long total = 0, sum = 0;
+		for (int g = 0; g < histogram.length; g++) {
+			total += histogram[g];
+			sum += (long) g * histogram[g];
+		}
+
+		int level = 128;
+		double best = 0;
+		long below = 0, sumBelow = 0;
+		for (int t = 1; t < histogram.length; t++) {
+			below += histogram[t - 1];
+			sumBelow += (long) (t - 1) * histogram[t - 1];
+			long above = total - below;
+			if (below == 0)
+				continue;
+			if (above == 0)
+				break;
+			double meanBelow = (double) sumBelow / below;
+			double meanAbove = (double) (sum - sumBelow) / above;
+			double between = (double) below * above * (meanBelow - meanAbove) * (meanBelow - meanAbove);
+			if (between > best) {
+				best = between;
+				level = t;
+			}
+		}
+		return level;
+	}
+}
@@ -0,0 +1,245 @@
+package imageprocessing;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Labeler that splits the image into horizontal strips and labels them in a
+ * ForkJoinPool. Each strip is labeled on its own by a TwoPassLabeler, the
+ * labels of the strips that touch across a seam are unioned in a
+ * ConcurrentUnionFind, and every pixel is then relabeled with its root. The
+ * partition is the same as the one of a single TwoPassLabeler with the same
+ * connectivity. The threads of the pool do not see the deadline of the
+ * caller, so the caller calls Cancellation.checkpoint() between the phases
+ *
+ * @author Thai Kha Le
+ *
+ */
+public class ParallelLabeler implements Labeler {
+
+	private final ForkJoinPool pool;
+	private final int minStripRows;
+	private final Connectivity connectivity;
+
+	/**
+	 * Constructor, runs in the common pool
+	 */
+	public ParallelLabeler() {
+		this(Connectivity.FOUR);
+	}
+
+	/**
+	 * Constructor, runs in the common pool
+	 *
+	 * @param connectivity
+	 *            the neighbourhood of a pixel
+	 */
+	public ParallelLabeler(Connectivity connectivity) {
+		this(ForkJoinPool.commonPool(), 64, connectivity);
+	}
+
+	/**
+	 * Constructor
+	 *
+	 * @param pool
+	 *            the pool the strips are labeled in
+	 * @param minStripRows
+	 *            smallest number of rows of a strip, images with fewer rows
+	 *            are labeled as one strip
+	 */
+	public ParallelLabeler(ForkJoinPool pool, int minStripRows) {
+		this(pool, minStripRows, Connectivity.FOUR);
+	}
+
+	/**
+	 * Constructor
+	 *
+	 * @param pool
+	 *            the pool the strips are labeled in
+	 * @param minStripRows
+	 *            smallest number of rows of a strip, images with fewer rows
+	 *            are labeled as one strip
+	 * @param connectivity
+	 *            the neighbourhood of a pixel
+	 */
+	public ParallelLabeler(ForkJoinPool pool, int minStripRows, Connectivity connectivity) {
+		this.pool = pool;
+		this.minStripRows = Math.max(minStripRows, 1);
+		this.connectivity = connectivity;
+	}
+
+	/**
+	 * Connectivity getter
+	 *
+	 * @return the neighbourhood of a pixel
+	 */
+	@Override
+	public Connectivity getConnectivity() {
+		return connectivity;
+	}
+
+	/**
+	 * Label the foreground pixels of a binary mask
+	 *
+	 * @param mask
+	 *            row-major mask, 1 for foreground and 0 for background
+	 * @param wid
+	 *            width of the image
+	 * @param hei
+	 *            height of the image
+	 * @param labels
+	 *            row-major array to be filled with the labels
+	 * @return the number of components
+	 */
+	@Override
+	public int label(byte[] mask, int wid, int hei, int[] labels) {
+		return label(mask, null, wid, hei, labels);
+	}
+
+	/**
+	 * Tell if the engine reads a packed mask without unpacking it first
+	 *
+	 * @return true, each strip scans the runs of its rows
+	 */
+	@Override
+	public boolean readsBits() {
+		return true;
+	}
+
+	/**
+	 * Label the foreground pixels of a packed mask, each strip reads its rows
+	 * of the bits
+	 *
+	 * @param mask
+	 *            the packed mask
+	 * @param labels
+	 *            row-major array to be filled with the labels
+	 * @return the number of components
+	 */
+	@Override
+	public int label(BitMask mask, int[] labels) {
+		return label(null, mask, mask.getWidth(), mask.getHeight(), labels);
+	}
+
+	/**
+	 * Label the foreground pixels of a byte or a packed mask
+	 *
+	 * @param mask
+	 *            row-major mask, or null if bits is given
+	 * @param bits
+	 *            packed mask read instead of mask, or null
+	 * @param wid
+	 * @param hei
+	 * @param labels
+	 * @return the number of components
+	 */
+	private int label(byte[] mask, BitMask bits, int wid, int hei, int[] labels) {
+		// a few strips per worker so that a strip full of components does
+		// not hold the others up
+		int strips = Math.max(1, Math.min(4 * pool.getParallelism(), hei / minStripRows));
+		if (strips == 1)
+			return bits != null ? stripLabeler().label(bits, labels) : stripLabeler().label(mask, wid, hei, labels);
+
+		int[] rowFrom = new int[strips + 1];
+		for (int i = 0; i <= strips; i++)
+			rowFrom[i] = (int) ((long) hei * i / strips);
+
+		// Each strip is labeled 1 to m on its own, then shifted by the number
+		// of labels of the strips above it
+		int[] base = new int[strips + 1];
+		Cancellation.checkpoint(0, hei);
+		pool.invoke(new Strips(0, strips, i -> base[i + 1] = bits != null
+				? stripLabeler().labelRows(bits, rowFrom[i], rowFrom[i + 1], labels)
+				: stripLabeler().labelRows(mask, wid, rowFrom[i], rowFrom[i + 1], labels)));
+		for (int i = 0; i < strips; i++)
+			base[i + 1] += base[i];
+
+		ConcurrentUnionFind equi = new ConcurrentUnionFind(base[strips] + 1);
+		for (int l = 0; l < base[strips]; l++)
+			equi.makeSet();
+
+		// Union the labels that touch across the seam above each strip, with
+		// 8-connectivity the pixels above left and above right touch as well
+		boolean diagonal = connectivity == Connectivity.EIGHT;
+		Cancellation.checkpoint(hei, hei);
+		pool.invoke(new Strips(1, strips, i -> {
+			int below = rowFrom[i] * wid;
+			int above = below - wid;
+			for (int x = 0; x < wid; x++) {
+				int l = labels[below + x];
+				if (l == 0)
+					continue;
+				l += base[i];
+				if (labels[above + x] != 0) {
+					equi.union(l, labels[above + x] + base[i - 1]);
+				} else if (diagonal) {
+					if (x > 0 && labels[above + x - 1] != 0)
+						equi.union(l, labels[above + x - 1] + base[i - 1]);
+					if (x < wid - 1 && labels[above + x + 1] != 0)
+						equi.union(l, labels[above + x + 1] + base[i - 1]);
+				}
+			}
+		}));
+
+		// The roots are the smallest labels of their components, so numbering
+		// them in order numbers the components 1 to count in memory order
+		int[] compacted = new int[base[strips] + 1];
+		int count = 0;
+		for (int l = 1; l <= base[strips]; l++) {
+			if (equi.find(l) == l)
+				compacted[l] = ++count;
+		}
+
+		// Relabel every pixel with the final label of its root
+		pool.invoke(new Strips(0, strips, i -> {
+			for (int id = rowFrom[i] * wid, end = rowFrom[i + 1] * wid; id < end; id++) {
+				if (labels[id] != 0)
+					labels[id] = compacted[equi.find(labels[id] + base[i])];
+			}
+		}));
+		return count;
+	}
+
+	/**
+	 * Make the labeler of one strip, each strip needs its own
+	 *
+	 * @return a row-major labeler with the same connectivity
+	 */
+	private TwoPassLabeler stripLabeler() {
+		return new TwoPassLabeler(connectivity);
+	}
+
+	/**
+	 * Work done on one strip
+	 */
+	private interface StripTask {
+		void run(int strip);
+	}
+
+	/**
+	 * Run a task on a range of strips, halving the range until one strip is
+	 * left
+	 */
+	private static class Strips extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+		private final int from, to;
+		private final StripTask task;
+
+		Strips(int from, int to, StripTask task) {
+			this.from = from;
+			this.to = to;
+			this.task = task;
+		}
+
+		@Override
+		protected void compute() {
+			if (to - from <= 1) {
+				if (from < to)
+					task.run(from);
+				return;
+			}
+			int mid = (from + to) >>> 1;
+			invokeAll(new Strips(from, mid, task), new Strips(mid, to, task));
+		}
+	}
+}
@@ -0,0 +1,216 @@
+package imageprocessing;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import edu.princeton.cs.introcs.Picture;
+
+/**
+ * Pixels of pictures kept by key up to a budget of bytes, the least recently
+ * used going first once the budget is reached. The processors keep their
+ * derived pictures in the shared cache, so that a picture asked for again,
+ * by the same processor or by another one of the same file, is not drawn
+ * again. The cache keeps a copy of the pixels and hands out a new Picture of
+ * them on each get, so a caller may change or show its picture without
+ * touching the one of another caller. A picture is counted as its 4 bytes
+ * per pixel; one larger than the whole budget is not kept
+ *
+ * @author Thai Kha Le
+ *
+ */
+public class PictureCache {
+
+	/**
+	 * Budget of the shared cache when none is given, in bytes
+	 */
+	public static final long DEFAULT_BUDGET_BYTES = 64L << 20;
+
+	private static PictureCache shared;
+
+	private final long budgetBytes;
+	private long bytes; // bytes of the pictures kept
+	// in access order, the least recently used first
+	private final LinkedHashMap<Object, Pixels> pictures = new LinkedHashMap<>(16, 0.75f, true);
+
+	/**
+	 * The pixels of a picture kept
+	 */
+	private static final class Pixels {
+		private final int wid, hei;
+		private final int[] rgb;
+
+		Pixels(Picture picture) {
+			wid = picture.width();
+			hei = picture.height();
+			rgb = PictureRaster.readRGB(picture);
+		}
+
+		/**
+		 * Make a new picture of the pixels
+		 *
+		 * @return the picture
+		 */
+		Picture toPicture() {
+			Picture picture = new Picture(wid, hei);
+			PictureRaster.writeRGB(picture, rgb);
+			return picture;
+		}
+
+		/**
+		 * Bytes the pixels are counted for
+		 *
+		 * @return 4 bytes per pixel
+		 */
+		long size() {
+			return 4L * wid * hei;
+		}
+	}
+
+	/**
+	 * Makes a picture that is not in the cache
+	 */
+	public interface Maker {
+
+		/**
+		 * Make the picture
+		 *
+		 * @return the picture
+		 * @throws Exception
+		 *             if it cannot be made
+		 */
+		Picture make() throws Exception;
+	}
+
+	/**
+	 * Constructor
+	 *
+	 * @param budgetBytes
+	 *            most bytes of pictures kept at once
+	 */
+	public PictureCache(long budgetBytes) {
+		if (budgetBytes < 0)
+			throw new IllegalArgumentException("Negative budget");
+		this.budgetBytes = budgetBytes;
+	}
+
+	/**
+	 * Get the cache shared by all processors, made on first use with the
+	 * default budget
+	 *
+	 * @return the shared cache
+	 */
+	public static synchronized PictureCache shared() {
+		if (shared == null)
+			shared = new PictureCache(DEFAULT_BUDGET_BYTES);
+		return shared;
+	}
+
+	/**
+	 * Replace the shared cache, to change its budget or to start empty
+	 *
+	 * @param cache
+	 *            the new shared cache
+	 */
+	public static synchronized void setShared(PictureCache cache) {
+		shared = cache;
+	}
+
+	/**
+	 * Get a picture, made and kept if it is not in the cache. The picture
+	 * is made outside the lock of the cache, so two threads asking for the
+	 * same missing picture may both make it
+	 *
+	 * @param key
+	 *            the key of the picture, with equals and hashCode
+	 * @param maker
+	 *            makes the picture if it is missing
+	 * @return a picture of its own to the caller
+	 * @throws Exception
+	 *             what the maker threw
+	 */
+	public Picture get(Object key, Maker maker) throws Exception {
+		Picture picture = get(key);
+		if (picture == null) {
+			picture = maker.make();
+			put(key, picture);
+		}
+		return picture;
+	}
+
+	/**
+	 * Get a picture and mark it as the most recently used
+	 *
+	 * @param key
+	 * @return a new picture of the pixels kept, or null if they are not in
+	 *         the cache
+	 */
+	public Picture get(Object key) {
+		Pixels pixels;
+		synchronized (this) {
+			pixels = pictures.get(key);
+		}
+		// the pixels kept are never written, so they are copied unlocked
+		return pixels != null ? pixels.toPicture() : null;
+	}
+
+	/**
+	 * Keep a copy of the pixels of a picture, then drop the least recently
+	 * used pictures until the cache fits its budget again
+	 *
+	 * @param key
+	 * @param picture
+	 *            the picture, which the caller may go on changing
+	 */
+	public void put(Object key, Picture picture) {
+		if (4L * picture.width() * picture.height() > budgetBytes)
+			return;
+		Pixels pixels = new Pixels(picture);
+		synchronized (this) {
+			Pixels old = pictures.put(key, pixels);
+			if (old != null)
+				bytes -= old.size();
+			bytes += pixels.size();
+			Iterator<Map.Entry<Object, Pixels>> eldest = pictures.entrySet().iterator();
+			while (bytes > budgetBytes) {
+				bytes -= eldest.next().getValue().size();
+				eldest.remove();
+			}
+		}
+	}
+
+	/**
+	 * Drop every picture
+	 */
+	public synchronized void clear() {
+		pictures.clear();
+		bytes = 0;
+	}
+
+	/**
+	 * Size getter
+	 *
+	 * @return number of pictures kept
+	 */
+	public synchronized int size() {
+		return pictures.size();
+	}
+
+	/**
+	 * Bytes getter
+	 *
+	 * @return bytes of the pictures kept
+	 */
+	public synchronized long getBytes() {
+		return bytes;
+	}
+
+	/**
+	 * Budget getter
+	 *
+	 * @return most bytes of pictures kept at once
+	 */
+	public long getBudgetBytes() {
+		return budgetBytes;
+	}
+}
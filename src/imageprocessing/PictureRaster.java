@@ -0,0 +1,238 @@
+package imageprocessing;
+
+import java.awt.Color;
+import java.awt.image.BufferedImage;
+import java.awt.image.ComponentSampleModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.awt.image.WritableRaster;
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.net.URL;
+
+import javax.imageio.ImageIO;
+
+import edu.princeton.cs.introcs.Picture;
+
+/**
+ * Bulk access to the pixels of a picture as packed RGB ints, so that a whole
+ * image can be read or written in one sweep instead of creating a Color
+ * object for every pixel through Picture.get/Picture.set
+ *
+ * @author Thai Kha Le
+ *
+ */
+public final class PictureRaster {
+
+	// Picture does not expose its BufferedImage, the field is reached by
+	// reflection and the slow per-pixel path is used if that is not possible
+	private static final Field IMAGE = imageField();
+
+	private PictureRaster() {
+	}
+
+	/**
+	 * Look up the private image field of Picture
+	 *
+	 * @return the field, or null if it cannot be accessed
+	 */
+	private static Field imageField() {
+		try {
+			Field field = Picture.class.getDeclaredField("image");
+			field.setAccessible(true);
+			return field;
+		} catch (Exception e) {
+			return null;
+		}
+	}
+
+	/**
+	 * Decode an image file once with ImageIO, the same way Picture(String)
+	 * finds it: a file first, then a resource next to the classes, then a URL
+	 *
+	 * @param fileLocation
+	 *            file location of type String
+	 * @return the decoded image, with the raster its reader made
+	 * @throws IOException
+	 *             if the file cannot be found or is not an image ImageIO
+	 *             can read
+	 */
+	public static BufferedImage decode(String fileLocation) throws IOException {
+		File file = new File(fileLocation);
+		BufferedImage image;
+		if (file.isFile()) {
+			image = ImageIO.read(file);
+		} else {
+			URL url = PictureRaster.class.getResource(fileLocation);
+			image = ImageIO.read(url != null ? url : new URL(fileLocation));
+		}
+		if (image == null)
+			throw new IOException("Could not decode file: " + fileLocation);
+		return image;
+	}
+
+	/**
+	 * Copy an image into a new picture in one bulk write
+	 *
+	 * @param image
+	 *            the image
+	 * @return a picture with the same pixels
+	 */
+	public static Picture toPicture(BufferedImage image) {
+		Picture picture = new Picture(image.getWidth(), image.getHeight());
+		writeRGB(picture, readRGB(image));
+		return picture;
+	}
+
+	/**
+	 * Get the image that backs a picture
+	 *
+	 * @param picture
+	 *            the picture
+	 * @return the backing image, or null if it cannot be accessed
+	 */
+	public static BufferedImage getImage(Picture picture) {
+		if (IMAGE == null)
+			return null;
+		try {
+			return (BufferedImage) IMAGE.get(picture);
+		} catch (Exception e) {
+			return null;
+		}
+	}
+
+	/**
+	 * Get the pixels of a picture to be written in place, which is possible
+	 * when its image is a TYPE_INT_RGB raster of its own, rows after rows
+	 * with no gap, as the image of a new Picture(wid, hei) is
+	 *
+	 * @param picture
+	 *            the picture
+	 * @return row-major array of packed RGB values backing the picture, or
+	 *         null if it cannot be written in place
+	 */
+	static int[] pixels(Picture picture) {
+		BufferedImage image = getImage(picture);
+		if (image == null || image.getType() != BufferedImage.TYPE_INT_RGB)
+			return null;
+		WritableRaster raster = image.getRaster();
+		DataBuffer buffer = raster.getDataBuffer();
+		if (raster.getParent() != null || raster.getSampleModelTranslateX() != 0
+				|| raster.getSampleModelTranslateY() != 0 || buffer.getOffset() != 0
+				|| ((SinglePixelPackedSampleModel) raster.getSampleModel()).getScanlineStride() != image.getWidth())
+			return null;
+		int[] data = ((DataBufferInt) buffer).getData();
+		return data.length == image.getWidth() * image.getHeight() ? data : null;
+	}
+
+	/**
+	 * Read all pixels of a picture
+	 *
+	 * @param picture
+	 *            the picture
+	 * @return row-major array of packed RGB values, index y * width + x
+	 */
+	public static int[] readRGB(Picture picture) {
+		BufferedImage image = getImage(picture);
+		if (image != null)
+			return readRGB(image);
+
+		int wid = picture.width();
+		int hei = picture.height();
+		int[] rgb = new int[wid * hei];
+		for (int y = 0; y < hei; y++) {
+			for (int x = 0; x < wid; x++) {
+				rgb[y * wid + x] = picture.get(x, y).getRGB();
+			}
+		}
+		return rgb;
+	}
+
+	/**
+	 * Read all pixels of an image. Integer and byte interleaved rasters are
+	 * copied straight from their data buffer, any other layout goes through
+	 * the bulk BufferedImage.getRGB
+	 *
+	 * @param image
+	 *            the image
+	 * @return row-major array of packed RGB values, index y * width + x
+	 */
+	public static int[] readRGB(BufferedImage image) {
+		int wid = image.getWidth();
+		int hei = image.getHeight();
+		int[] rgb = new int[wid * hei];
+		WritableRaster raster = image.getRaster();
+		DataBuffer buffer = raster.getDataBuffer();
+		boolean plain = raster.getParent() == null && raster.getSampleModelTranslateX() == 0
+				&& raster.getSampleModelTranslateY() == 0;
+		int type = image.getType();
+
+		if (plain && (type == BufferedImage.TYPE_INT_RGB || type == BufferedImage.TYPE_INT_ARGB)) {
+			int[] data = ((DataBufferInt) buffer).getData();
+			int stride = ((SinglePixelPackedSampleModel) raster.getSampleModel()).getScanlineStride();
+			int alpha = type == BufferedImage.TYPE_INT_RGB ? 0xFF000000 : 0;
+			for (int y = 0; y < hei; y++) {
+				int row = buffer.getOffset() + y * stride;
+				for (int x = 0, id = y * wid; x < wid; x++, id++) {
+					rgb[id] = data[row + x] | alpha;
+				}
+			}
+		} else if (plain && (type == BufferedImage.TYPE_3BYTE_BGR || type == BufferedImage.TYPE_4BYTE_ABGR)) {
+			byte[] data = ((DataBufferByte) buffer).getData();
+			ComponentSampleModel model = (ComponentSampleModel) raster.getSampleModel();
+			int stride = model.getScanlineStride();
+			int step = model.getPixelStride();
+			int[] bands = model.getBandOffsets(); // red, green, blue (, alpha)
+			boolean hasAlpha = bands.length == 4;
+			for (int y = 0; y < hei; y++) {
+				int at = buffer.getOffset() + y * stride;
+				for (int x = 0, id = y * wid; x < wid; x++, id++, at += step) {
+					int a = hasAlpha ? data[at + bands[3]] & 0xFF : 0xFF;
+					rgb[id] = a << 24 | (data[at + bands[0]] & 0xFF) << 16 | (data[at + bands[1]] & 0xFF) << 8
+							| (data[at + bands[2]] & 0xFF);
+				}
+			}
+		} else {
+			image.getRGB(0, 0, wid, hei, rgb, 0, wid);
+		}
+		return rgb;
+	}
+
+	/**
+	 * Overwrite all pixels of a picture
+	 *
+	 * @param picture
+	 *            the picture to write to
+	 * @param rgb
+	 *            row-major array of packed RGB values, index y * width + x
+	 */
+	public static void writeRGB(Picture picture, int[] rgb) {
+		int wid = picture.width();
+		int hei = picture.height();
+		BufferedImage image = getImage(picture);
+		if (image == null) {
+			for (int y = 0; y < hei; y++) {
+				for (int x = 0; x < wid; x++) {
+					picture.set(x, y, new Color(rgb[y * wid + x]));
+				}
+			}
+			return;
+		}
+
+		WritableRaster raster = image.getRaster();
+		if (image.getType() == BufferedImage.TYPE_INT_RGB && raster.getParent() == null
+				&& raster.getSampleModelTranslateX() == 0 && raster.getSampleModelTranslateY() == 0) {
+			DataBuffer buffer = raster.getDataBuffer();
+			int[] data = ((DataBufferInt) buffer).getData();
+			int stride = ((SinglePixelPackedSampleModel) raster.getSampleModel()).getScanlineStride();
+			for (int y = 0; y < hei; y++) {
+				System.arraycopy(rgb, y * wid, data, buffer.getOffset() + y * stride, wid);
+			}
+		} else {
+			image.setRGB(0, 0, wid, hei, rgb, 0, wid);
+		}
+	}
+}
@@ -0,0 +1,344 @@
+package imageprocessing;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Shared service that runs the processing of many images on a bounded pool,
+ * instead of a thread made and shut down per image. At most threads jobs
+ * run at once and at most queueCapacity more wait; submitting past that
+ * blocks the caller until a job finishes, so a batch cannot queue more
+ * images than the heap holds. Each job has its own timeout, counted from
+ * the moment it starts running: once it is over, its future fails with a
+ * ProcessingTimeoutException and its thread is interrupted. A labeling
+ * also checks the deadline itself every few rows, see Cancellation, and
+ * stops there, so the thread and the arrays of the job are freed soon
+ * after instead of when the scan would have finished.
+ *
+ * A job submitted from one of the threads of the service, such as a job
+ * that sets up another processor, runs at once on that thread under the
+ * deadline of the job that submitted it. Waiting for it on a pool whose
+ * threads are all busy with such jobs would otherwise never end.
+ *
+ * The jobs run on platform threads, or on virtual threads when they are
+ * asked for and the JVM has them (Java 21 and later), found by reflection
+ * since the code is compiled for Java 8
+ *
+ * @author Thai Kha Le
+ *
+ */
+public class ProcessingService implements AutoCloseable {
+
+	/**
+	 * Timeout of a job when none is given, in milliseconds
+	 */
+	public static final long DEFAULT_TIMEOUT_MILLIS = 20000;
+
+	private static ProcessingService shared;
+	private static final ThreadLocal<ProcessingService> jobService = new ThreadLocal<>(); // of a job thread
+
+	private final int threads;
+	private final boolean virtual;
+	private final Semaphore admitted; // jobs running or waiting
+	private final Semaphore running; // jobs running, for virtual threads
+	private final ExecutorService executor; // platform threads, or null
+	private final ThreadFactory virtualThreads; // or null
+	private final ScheduledExecutorService timer;
+	private volatile boolean closed;
+	private int pending; // jobs admitted and not finished, guarded by this
+
+	/**
+	 * Constructor
+	 *
+	 * @param threads
+	 *            number of jobs that run at once
+	 * @param queueCapacity
+	 *            number of jobs that can wait for a thread before submit()
+	 *            blocks
+	 * @param virtualThreads
+	 *            true to run the jobs on virtual threads if the JVM has them,
+	 *            false for a pool of platform threads
+	 */
+	public ProcessingService(int threads, int queueCapacity, boolean virtualThreads) {
+		if (threads < 1 || queueCapacity < 0)
+			throw new IllegalArgumentException("At least one thread and no negative queue are needed");
+		this.threads = threads;
+		this.virtualThreads = virtualThreads ? virtualThreadFactory() : null;
+		virtual = this.virtualThreads != null;
+		admitted = new Semaphore(threads + queueCapacity);
+		running = new Semaphore(threads);
+		executor = virtual ? null : Executors.newFixedThreadPool(threads, daemonThreads("processing"));
+		timer = Executors.newSingleThreadScheduledExecutor(daemonThreads("processing-timer"));
+	}
+
+	/**
+	 * Get the service shared by all processors, made on first use with one
+	 * platform thread per processor and room for as many waiting jobs again
+	 *
+	 * @return the shared service
+	 */
+	public static synchronized ProcessingService shared() {
+		if (shared == null || shared.closed) {
+			int n = Runtime.getRuntime().availableProcessors();
+			shared = new ProcessingService(n, n, false);
+		}
+		return shared;
+	}
+
+	/**
+	 * Replace the shared service, to configure the threads of every processor
+	 * at once. The service replaced is not closed
+	 *
+	 * @param service
+	 *            the new shared service
+	 */
+	public static synchronized void setShared(ProcessingService service) {
+		shared = service;
+	}
+
+	/**
+	 * Threads getter
+	 *
+	 * @return number of jobs that run at once
+	 */
+	public int getThreads() {
+		return threads;
+	}
+
+	/**
+	 * Tell if the jobs run on virtual threads
+	 *
+	 * @return true if virtual threads were asked for and the JVM has them
+	 */
+	public boolean isVirtual() {
+		return virtual;
+	}
+
+	/**
+	 * Tell if the current thread is running a job of this service
+	 *
+	 * @return true on one of its threads while a job runs
+	 */
+	public boolean isWorkerThread() {
+		return jobService.get() == this;
+	}
+
+	/**
+	 * Process an image with the default timeout
+	 *
+	 * @param image
+	 *            the processor to set up
+	 * @return a future that completes with the image once it is processed
+	 * @throws InterruptedException
+	 *             if interrupted while waiting for room
+	 */
+	public CompletableFuture<ConnectedComponentImage> submit(ConnectedComponentImage image)
+			throws InterruptedException {
+		return submit(image, DEFAULT_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Process an image
+	 *
+	 * @param image
+	 *            the processor to set up
+	 * @param timeout
+	 *            longest time the processing may run
+	 * @param unit
+	 *            unit of the timeout
+	 * @return a future that completes with the image once it is processed
+	 * @throws InterruptedException
+	 *             if interrupted while waiting for room
+	 */
+	public CompletableFuture<ConnectedComponentImage> submit(ConnectedComponentImage image, long timeout,
+			TimeUnit unit) throws InterruptedException {
+		return submit(() -> {
+			image.process();
+			return image;
+		}, timeout, unit);
+	}
+
+	/**
+	 * Run a job, blocking while as many jobs as the pool and the queue hold
+	 * are already admitted. A job submitted by a job of this service runs at
+	 * once on the calling thread instead, under the deadline of the caller
+	 *
+	 * @param job
+	 *            the job
+	 * @param timeout
+	 *            longest time the job may run once it started
+	 * @param unit
+	 *            unit of the timeout
+	 * @return a future that completes with the result of the job, or fails
+	 *         with what it threw or with a ProcessingTimeoutException
+	 * @throws InterruptedException
+	 *             if interrupted while waiting for room
+	 * @throws RejectedExecutionException
+	 *             if the service is closed
+	 */
+	public <T> CompletableFuture<T> submit(Callable<T> job, long timeout, TimeUnit unit)
+			throws InterruptedException {
+		if (closed)
+			throw new RejectedExecutionException("Processing service is closed");
+		if (isWorkerThread()) {
+			CompletableFuture<T> result = new CompletableFuture<>();
+			try {
+				result.complete(job.call());
+			} catch (Throwable e) {
+				result.completeExceptionally(e);
+			}
+			return result;
+		}
+		admitted.acquire();
+		synchronized (this) {
+			if (closed) {
+				admitted.release();
+				throw new RejectedExecutionException("Processing service is closed");
+			}
+			pending++;
+		}
+		CompletableFuture<T> result = new CompletableFuture<>();
+		Runnable task = () -> run(job, timeout, unit, result);
+		try {
+			if (virtual)
+				virtualThreads.newThread(task).start();
+			else
+				executor.execute(task);
+		} catch (RuntimeException e) {
+			finished();
+			throw e;
+		}
+		return result;
+	}
+
+	/**
+	 * Run a job on the current thread under its timeout
+	 *
+	 * @param job
+	 * @param timeout
+	 * @param unit
+	 * @param result
+	 *            the future of the job
+	 */
+	private <T> void run(Callable<T> job, long timeout, TimeUnit unit, CompletableFuture<T> result) {
+		Thread worker = Thread.currentThread();
+		boolean[] active = new boolean[1]; // guarded by itself
+		ScheduledFuture<?> watchdog = null;
+		Cancellation cancellation = null;
+		try {
+			running.acquire();
+			try {
+				jobService.set(this);
+				Cancellation progress = Cancellation.start(timeout, unit);
+				cancellation = progress;
+				active[0] = true;
+				watchdog = timer.schedule(() -> {
+					synchronized (active) {
+						if (result.completeExceptionally(timedOut(progress, unit.toMillis(timeout))) && active[0])
+							worker.interrupt();
+					}
+				}, timeout, unit);
+				result.complete(job.call());
+			} finally {
+				// the watchdog cannot interrupt the thread once it moved on
+				synchronized (active) {
+					active[0] = false;
+				}
+				if (cancellation != null)
+					cancellation.finish();
+				jobService.remove();
+				Thread.interrupted();
+				running.release();
+			}
+		} catch (CancellationException e) {
+			// the labeling stopped itself at a checkpoint, possibly before
+			// the watchdog went off
+			if (cancellation != null && cancellation.isOver())
+				result.completeExceptionally(timedOut(cancellation, unit.toMillis(timeout)));
+			else
+				result.completeExceptionally(e);
+		} catch (Throwable e) {
+			result.completeExceptionally(e);
+		} finally {
+			if (watchdog != null)
+				watchdog.cancel(false);
+			finished();
+		}
+	}
+
+	/**
+	 * Give back the room of a job that finished, and stop the timer once the
+	 * last job of a closed service is done
+	 */
+	private synchronized void finished() {
+		admitted.release();
+		if (--pending == 0 && closed)
+			timer.shutdown();
+	}
+
+	/**
+	 * Make the exception of a job over its timeout
+	 *
+	 * @param progress
+	 *            the deadline of the job
+	 * @param timeoutMillis
+	 * @return the exception, with how far the labeling went
+	 */
+	private static ProcessingTimeoutException timedOut(Cancellation progress, long timeoutMillis) {
+		return new ProcessingTimeoutException(timeoutMillis, progress.getRowsDone(), progress.getRows(),
+				progress.getElapsedMillis());
+	}
+
+	/**
+	 * Stop taking jobs, the jobs already submitted still run under their
+	 * timeout. The timer stops after the last of them
+	 */
+	@Override
+	public synchronized void close() {
+		closed = true;
+		if (executor != null)
+			executor.shutdown();
+		if (pending == 0)
+			timer.shutdown();
+	}
+
+	/**
+	 * Make daemon threads, so that an idle pool does not keep the JVM alive
+	 *
+	 * @param name
+	 *            prefix of the thread names
+	 * @return the factory
+	 */
+	private static ThreadFactory daemonThreads(String name) {
+		AtomicInteger n = new AtomicInteger();
+		return r -> {
+			Thread t = new Thread(r, name + "-" + n.incrementAndGet());
+			t.setDaemon(true);
+			return t;
+		};
+	}
+
+	/**
+	 * Look up Thread.ofVirtual().factory()
+	 *
+	 * @return the factory of virtual threads, or null before Java 21
+	 */
+	private static ThreadFactory virtualThreadFactory() {
+		try {
+			Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+			return (ThreadFactory) Class.forName("java.lang.Thread$Builder").getMethod("factory").invoke(builder);
+		} catch (ReflectiveOperationException e) {
+			return null;
+		}
+	}
+}
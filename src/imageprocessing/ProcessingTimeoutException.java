@@ -0,0 +1,65 @@
+package imageprocessing;
+
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Processing that ran out of time, with how far the labeling went before it
+ * was stopped
+ *
+ * @author Thai Kha Le
+ *
+ */
+public class ProcessingTimeoutException extends TimeoutException {
+
+	private static final long serialVersionUID = 1L;
+
+	private final int rowsDone, rows;
+	private final long elapsedMillis;
+
+	/**
+	 * Constructor
+	 *
+	 * @param timeoutMillis
+	 *            the time allowed, in milliseconds
+	 * @param rowsDone
+	 *            rows of the pass done when it stopped
+	 * @param rows
+	 *            rows of the pass, 0 if the labeling had not started
+	 * @param elapsedMillis
+	 *            time the processing ran, in milliseconds
+	 */
+	public ProcessingTimeoutException(long timeoutMillis, int rowsDone, int rows, long elapsedMillis) {
+		super("Processing took over " + timeoutMillis + " milliseconds, stopped after " + rowsDone + " of " + rows
+				+ " rows");
+		this.rowsDone = rowsDone;
+		this.rows = rows;
+		this.elapsedMillis = elapsedMillis;
+	}
+
+	/**
+	 * Rows done getter
+	 *
+	 * @return rows of the pass done when the labeling stopped
+	 */
+	public int getRowsDone() {
+		return rowsDone;
+	}
+
+	/**
+	 * Rows getter
+	 *
+	 * @return rows of the pass, 0 if the labeling had not started
+	 */
+	public int getRows() {
+		return rows;
+	}
+
+	/**
+	 * Elapsed time getter
+	 *
+	 * @return time the processing ran, in milliseconds
+	 */
+	public long getElapsedMillis() {
+		return elapsedMillis;
+	}
+}
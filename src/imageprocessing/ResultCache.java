@@ -0,0 +1,382 @@
+package imageprocessing;
+
+import java.awt.image.BufferedImage;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Results of scans kept on the local disk, so that an image seen before is
+ * not scanned again, in this run or a later one. A result is addressed by
+ * the SHA-256 of the decoded pixels and of the settings of the scan (fixed
+ * threshold, mode and connectivity), so the same pixels find the same result
+ * whatever file they were read from. A result holds the labels, as runs of
+ * one label on each row, and the statistics of every component, deflated
+ * in one file per result.
+ *
+ * The files of a directory are kept up to a budget of bytes, the least
+ * recently used going first: a file is touched each time it is read. A file
+ * is written under a temporary name and then renamed, so a reader never sees
+ * half of one, and a file that cannot be read is deleted and counts as
+ * missing. There is no shared cache unless one is set
+ *
+ * @author Thai Kha Le
+ *
+ */
+public class ResultCache {
+
+	/**
+	 * Budget of a cache when none is given, in bytes
+	 */
+	public static final long DEFAULT_BUDGET_BYTES = 256L << 20;
+
+	private static final int MAGIC = 0x43434C31; // "CCL1", also hashed into the keys
+	private static final String SUFFIX = ".ccl";
+
+	private static ResultCache shared;
+
+	private final File directory;
+	private final long budgetBytes;
+
+	/**
+	 * Result of a scan read from the disk
+	 */
+	public static final class Result {
+		private final int count;
+		private final int[] labels;
+		private final LabelStatistics statistics;
+
+		private Result(int count, int[] labels, LabelStatistics statistics) {
+			this.count = count;
+			this.labels = labels;
+			this.statistics = statistics;
+		}
+
+		/**
+		 * Count getter
+		 *
+		 * @return the number of components
+		 */
+		public int getCount() {
+			return count;
+		}
+
+		/**
+		 * Labels getter
+		 *
+		 * @return row-major labels, the components numbered 1 to count
+		 */
+		public int[] getLabels() {
+			return labels;
+		}
+
+		/**
+		 * Statistics getter
+		 *
+		 * @return the statistics of the labels 1 to count
+		 */
+		public LabelStatistics getStatistics() {
+			return statistics;
+		}
+	}
+
+	/**
+	 * Constructor
+	 *
+	 * @param directory
+	 *            directory of the results, made if it does not exist
+	 * @param budgetBytes
+	 *            most bytes of result files kept in it
+	 * @throws IOException
+	 *             if the directory cannot be made
+	 */
+	public ResultCache(File directory, long budgetBytes) throws IOException {
+		if (budgetBytes < 0)
+			throw new IllegalArgumentException("Negative budget");
+		if (!directory.isDirectory() && !directory.mkdirs())
+			throw new IOException("Could not make directory " + directory);
+		this.directory = directory;
+		this.budgetBytes = budgetBytes;
+	}
+
+	/**
+	 * Get the cache used by all processors
+	 *
+	 * @return the shared cache, or null if none was set
+	 */
+	public static synchronized ResultCache shared() {
+		return shared;
+	}
+
+	/**
+	 * Set the cache used by all processors
+	 *
+	 * @param cache
+	 *            the new shared cache, null for none
+	 */
+	public static synchronized void setShared(ResultCache cache) {
+		shared = cache;
+	}
+
+	/**
+	 * Make the key of the result of a scan
+	 *
+	 * @param image
+	 *            the decoded image
+	 * @param threshold
+	 *            the threshold of the scan
+	 * @param connectivity
+	 *            the neighbourhood of a pixel
+	 * @return the key, 64 hexadecimal digits
+	 */
+	public static String key(BufferedImage image, FixedThreshold threshold, Connectivity connectivity) {
+		MessageDigest digest;
+		try {
+			digest = MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e); // every JVM has SHA-256
+		}
+		int wid = image.getWidth();
+		int hei = image.getHeight();
+		ByteBuffer bytes = ByteBuffer.allocate(4 * Math.max(wid, 6));
+		bytes.putInt(MAGIC).putInt(wid).putInt(hei).putInt(threshold.getLevel())
+				.putInt(threshold.isDarkForeground() ? 1 : 0).putInt(connectivity.ordinal());
+		digest.update(bytes.array(), 0, bytes.position());
+		// one row at a time, so that no copy of the whole image is made
+		int[] row = new int[wid];
+		for (int y = 0; y < hei; y++) {
+			image.getRGB(0, y, wid, 1, row, 0, wid);
+			bytes.clear();
+			bytes.asIntBuffer().put(row);
+			digest.update(bytes.array(), 0, 4 * wid);
+		}
+		StringBuilder hex = new StringBuilder();
+		for (byte b : digest.digest())
+			hex.append(String.format("%02x", b));
+		return hex.toString();
+	}
+
+	/**
+	 * Read a result and mark it as the most recently used
+	 *
+	 * @param key
+	 *            the key of the result
+	 * @param wid
+	 *            width of the image
+	 * @param hei
+	 *            height of the image
+	 * @return the result, or null if it is not kept or cannot be read
+	 */
+	public Result load(String key, int wid, int hei) {
+		File file = file(key);
+		if (!file.isFile())
+			return null;
+		try (DataInputStream in = new DataInputStream(
+				new BufferedInputStream(new InflaterInputStream(new FileInputStream(file))))) {
+			if (in.readInt() != MAGIC || in.readInt() != wid || in.readInt() != hei)
+				throw new IOException("Not a result of " + wid + " x " + hei);
+			int count = in.readInt();
+			if (count < 0 || count > (long) wid * hei)
+				throw new IOException("Bad count in " + file);
+			int[] labels = new int[wid * hei];
+			for (int y = 0; y < hei; y++) {
+				for (int x = 0, row = y * wid; x < wid;) {
+					int label = readVarInt(in);
+					int length = readVarInt(in);
+					// a damaged number may read as negative
+					if (label < 0 || label > count || length <= 0 || length > wid - x)
+						throw new IOException("Bad run in " + file);
+					Arrays.fill(labels, row + x, row + x + length, label);
+					x += length;
+				}
+			}
+			LabelStatistics statistics = LabelStatistics.read(in, count);
+			file.setLastModified(System.currentTimeMillis());
+			return new Result(count, labels, statistics);
+		} catch (IOException e) {
+			// a damaged result is made again
+			file.delete();
+			return null;
+		}
+	}
+
+	/**
+	 * Keep a result, then drop the least recently used results until the
+	 * directory fits its budget again
+	 *
+	 * @param key
+	 *            the key of the result
+	 * @param wid
+	 *            width of the image
+	 * @param hei
+	 *            height of the image
+	 * @param count
+	 *            the number of components
+	 * @param labels
+	 *            row-major labels, the components numbered 1 to count
+	 * @param statistics
+	 *            the statistics of the labels 1 to count, or null to work
+	 *            them out from the labels
+	 * @throws IOException
+	 *             if the result cannot be written
+	 */
+	public void store(String key, int wid, int hei, int count, int[] labels, LabelStatistics statistics)
+			throws IOException {
+		if (statistics == null) {
+			statistics = new LabelStatistics(count + 1);
+			statistics.addLabels(labels, wid, hei);
+		}
+		File temp = File.createTempFile("result", ".tmp", directory);
+		try {
+			try (DataOutputStream out = new DataOutputStream(
+					new BufferedOutputStream(new DeflaterOutputStream(new FileOutputStream(temp))))) {
+				out.writeInt(MAGIC);
+				out.writeInt(wid);
+				out.writeInt(hei);
+				out.writeInt(count);
+				for (int y = 0; y < hei; y++) {
+					for (int x = 0, row = y * wid; x < wid;) {
+						int label = labels[row + x];
+						int start = x;
+						while (x < wid && labels[row + x] == label)
+							x++;
+						writeVarInt(out, label);
+						writeVarInt(out, x - start);
+					}
+				}
+				statistics.write(out, count);
+			}
+			Files.move(temp.toPath(), file(key).toPath(), StandardCopyOption.REPLACE_EXISTING,
+					StandardCopyOption.ATOMIC_MOVE);
+		} finally {
+			temp.delete();
+		}
+		evict();
+	}
+
+	/**
+	 * Delete every result
+	 */
+	public synchronized void clear() {
+		for (File file : files())
+			file.delete();
+	}
+
+	/**
+	 * Size getter
+	 *
+	 * @return number of results kept
+	 */
+	public int size() {
+		return files().length;
+	}
+
+	/**
+	 * Bytes getter
+	 *
+	 * @return bytes of the result files kept
+	 */
+	public long getBytes() {
+		long bytes = 0;
+		for (File file : files())
+			bytes += file.length();
+		return bytes;
+	}
+
+	/**
+	 * Budget getter
+	 *
+	 * @return most bytes of result files kept
+	 */
+	public long getBudgetBytes() {
+		return budgetBytes;
+	}
+
+	/**
+	 * Drop the least recently used results until the directory fits the
+	 * budget
+	 */
+	private synchronized void evict() {
+		File[] files = files();
+		long bytes = 0;
+		for (File file : files)
+			bytes += file.length();
+		if (bytes <= budgetBytes)
+			return;
+		Arrays.sort(files, Comparator.comparingLong(File::lastModified));
+		for (int i = 0; i < files.length && bytes > budgetBytes; i++) {
+			long length = files[i].length();
+			if (files[i].delete())
+				bytes -= length;
+		}
+	}
+
+	/**
+	 * The result files of the directory
+	 *
+	 * @return the files
+	 */
+	private File[] files() {
+		File[] files = directory.listFiles((dir, name) -> name.endsWith(SUFFIX));
+		return files != null ? files : new File[0];
+	}
+
+	/**
+	 * The file of a result
+	 *
+	 * @param key
+	 * @return the file, which may not exist
+	 */
+	private File file(String key) {
+		return new File(directory, key + SUFFIX);
+	}
+
+	/**
+	 * Write a non-negative int in 7-bit groups, the lowest first, so that
+	 * small labels and short runs take one byte
+	 *
+	 * @param out
+	 * @param value
+	 * @throws IOException
+	 */
+	private static void writeVarInt(DataOutputStream out, int value) throws IOException {
+		while ((value & ~0x7F) != 0) {
+			out.write(value & 0x7F | 0x80);
+			value >>>= 7;
+		}
+		out.write(value);
+	}
+
+	/**
+	 * Read an int written by writeVarInt()
+	 *
+	 * @param in
+	 * @return the value
+	 * @throws IOException
+	 *             if the value is cut short or too long
+	 */
+	private static int readVarInt(DataInputStream in) throws IOException {
+		int value = 0;
+		for (int shift = 0; shift < 35; shift += 7) {
+			int b = in.readUnsignedByte();
+			value |= (b & 0x7F) << shift;
+			if ((b & 0x80) == 0)
+				return value;
+		}
+		throw new IOException("Bad number");
+	}
+}
@@ -0,0 +1,418 @@
+package imageprocessing;
+
+import java.util.Arrays;
+import java.util.concurrent.CancellationException;
+import java.util.function.IntFunction;
+
+/**
+ * Run-based connected component labeling. Each row is cut into its
+ * horizontal runs of foreground pixels, a run takes the label of the first
+ * run of the previous row that it overlaps and unions the labels of the
+ * others, which are found by walking both rows of runs side by side. The
+ * background is only met at the ends of the runs, so the first pass costs
+ * the number of runs rather than the number of pixels, and with a BitMask
+ * even finding the runs skips whole words of background. Only the final
+ * write of the labels array covers every pixel, the background being cleared
+ * in one fill per gap. Both passes over the rows call
+ * Cancellation.checkpoint() every Cancellation.ROWS rows
+ *
+ * @author Thai Kha Le
+ *
+ */
+public class RunLabeler implements Labeler {
+
+	private final Connectivity connectivity;
+	private final IntFunction<? extends GrowableUnionFind> unionFind;
+	private GrowableUnionFind equi; // equivalence table
+	private LabelStatistics stats; // accumulators, null if not collected
+	private int[] runStart = new int[16], runEnd = new int[16], runLabel = new int[16];
+	private int[] rowFirstRun = new int[1]; // first run of each row, then the number of runs
+	private int runs; // number of runs
+	private int labelCount; // provisional labels made, label 0 included
+	private int count; // number of components
+	private int unionCalls; // unions asked for by the first pass
+
+	/**
+	 * Constructor, with 4-connectivity
+	 */
+	public RunLabeler() {
+		this(Connectivity.FOUR);
+	}
+
+	/**
+	 * Constructor
+	 *
+	 * @param connectivity
+	 *            the neighbourhood of a pixel
+	 */
+	public RunLabeler(Connectivity connectivity) {
+		this(connectivity, WeightedUnionFind::new);
+	}
+
+	/**
+	 * Constructor
+	 *
+	 * @param connectivity
+	 *            the neighbourhood of a pixel
+	 * @param unionFind
+	 *            creates the equivalence table of each run of the labeler,
+	 *            given the number of foreground runs of the image
+	 */
+	public RunLabeler(Connectivity connectivity, IntFunction<? extends GrowableUnionFind> unionFind) {
+		this.connectivity = connectivity;
+		this.unionFind = unionFind;
+	}
+
+	/**
+	 * Connectivity getter
+	 *
+	 * @return the neighbourhood of a pixel
+	 */
+	@Override
+	public Connectivity getConnectivity() {
+		return connectivity;
+	}
+
+	/**
+	 * Get the number of foreground runs the last run found
+	 *
+	 * @return number of runs
+	 */
+	public int getRunCount() {
+		return runs;
+	}
+
+	/**
+	 * Get the number of provisional labels the last run put in the
+	 * equivalence table
+	 *
+	 * @return number of labels made
+	 */
+	public int getProvisionalLabels() {
+		return labelCount - 1;
+	}
+
+	/**
+	 * Get the number of times the last run had to union two different labels
+	 *
+	 * @return number of union calls
+	 */
+	public int getUnionCalls() {
+		return unionCalls;
+	}
+
+	/**
+	 * Label the foreground pixels of a binary mask
+	 *
+	 * @param mask
+	 *            row-major mask, 1 for foreground and 0 for background
+	 * @param wid
+	 *            width of the image
+	 * @param hei
+	 *            height of the image
+	 * @param labels
+	 *            row-major array to be filled with the labels
+	 * @return the number of components
+	 */
+	@Override
+	public int label(byte[] mask, int wid, int hei, int[] labels) {
+		findRuns(mask, wid, hei);
+		return labelRuns(wid, hei, labels, null);
+	}
+
+	/**
+	 * Label the foreground pixels of a binary mask and accumulate the
+	 * features of every component, one run at a time
+	 *
+	 * @param mask
+	 *            row-major mask, 1 for foreground and 0 for background
+	 * @param wid
+	 *            width of the image
+	 * @param hei
+	 *            height of the image
+	 * @param labels
+	 *            row-major array to be filled with the labels
+	 * @param stats
+	 *            empty accumulators to fill, indexed by label
+	 * @return the number of components
+	 */
+	@Override
+	public int label(byte[] mask, int wid, int hei, int[] labels, LabelStatistics stats) {
+		findRuns(mask, wid, hei);
+		return labelRuns(wid, hei, labels, stats);
+	}
+
+	/**
+	 * Tell if the engine reads a packed mask without unpacking it first
+	 *
+	 * @return true, the runs are found in the words of the mask
+	 */
+	@Override
+	public boolean readsBits() {
+		return true;
+	}
+
+	/**
+	 * Label the foreground pixels of a packed mask, whose runs are found a
+	 * word at a time
+	 *
+	 * @param mask
+	 *            the packed mask
+	 * @param labels
+	 *            row-major array to be filled with the labels
+	 * @return the number of components
+	 */
+	@Override
+	public int label(BitMask mask, int[] labels) {
+		findRuns(mask);
+		return labelRuns(mask.getWidth(), mask.getHeight(), labels, null);
+	}
+
+	/**
+	 * Label the foreground pixels of a packed mask and accumulate the
+	 * features of every component, one run at a time
+	 *
+	 * @param mask
+	 *            the packed mask
+	 * @param labels
+	 *            row-major array to be filled with the labels
+	 * @param stats
+	 *            empty accumulators to fill, indexed by label
+	 * @return the number of components
+	 */
+	@Override
+	public int label(BitMask mask, int[] labels, LabelStatistics stats) {
+		findRuns(mask);
+		return labelRuns(mask.getWidth(), mask.getHeight(), labels, stats);
+	}
+
+	/**
+	 * Cut every row of a byte mask into its foreground runs
+	 *
+	 * @param mask
+	 * @param wid
+	 * @param hei
+	 */
+	private void findRuns(byte[] mask, int wid, int hei) {
+		startRows(hei);
+		try {
+			for (int y = 0; y < hei; y++) {
+				if (y % Cancellation.ROWS == 0)
+					Cancellation.checkpoint(y, hei);
+				rowFirstRun[y] = runs;
+				int row = y * wid;
+				for (int x = 0; x < wid; x++) {
+					if (mask[row + x] == 0)
+						continue;
+					int start = x;
+					while (x < wid && mask[row + x] != 0)
+						x++;
+					addRun(start, x);
+				}
+			}
+		} catch (CancellationException e) {
+			forgetRuns();
+			throw e;
+		}
+		rowFirstRun[hei] = runs;
+	}
+
+	/**
+	 * Cut every row of a packed mask into its foreground runs
+	 *
+	 * @param mask
+	 */
+	private void findRuns(BitMask mask) {
+		int wid = mask.getWidth();
+		int hei = mask.getHeight();
+		startRows(hei);
+		try {
+			for (int y = 0; y < hei; y++) {
+				if (y % Cancellation.ROWS == 0)
+					Cancellation.checkpoint(y, hei);
+				rowFirstRun[y] = runs;
+				for (int x = mask.nextSetBit(y, 0); x < wid; x = mask.nextSetBit(y, x)) {
+					int end = mask.nextClearBit(y, x);
+					addRun(x, end);
+					x = end;
+				}
+			}
+		} catch (CancellationException e) {
+			forgetRuns();
+			throw e;
+		}
+		rowFirstRun[hei] = runs;
+	}
+
+	/**
+	 * Forget the runs of the last image
+	 *
+	 * @param hei
+	 *            height of the next image
+	 */
+	private void startRows(int hei) {
+		runs = 0;
+		if (rowFirstRun.length < hei + 1)
+			rowFirstRun = new int[hei + 1];
+	}
+
+	/**
+	 * Drop the run arrays of a labeling that was stopped, which may have
+	 * grown as large as the image
+	 */
+	private void forgetRuns() {
+		runs = 0;
+		runStart = new int[16];
+		runEnd = new int[16];
+		runLabel = new int[16];
+		rowFirstRun = new int[1];
+	}
+
+	/**
+	 * Append a run to the current row
+	 *
+	 * @param start
+	 *            x of the first pixel of the run
+	 * @param end
+	 *            x after the last pixel of the run
+	 */
+	private void addRun(int start, int end) {
+		if (runs == runStart.length) {
+			runStart = Arrays.copyOf(runStart, 2 * runs);
+			runEnd = Arrays.copyOf(runEnd, 2 * runs);
+			runLabel = Arrays.copyOf(runLabel, 2 * runs);
+		}
+		runStart[runs] = start;
+		runEnd[runs] = end;
+		runs++;
+	}
+
+	/**
+	 * Label the runs found, then write the labels of the pixels
+	 *
+	 * @param wid
+	 *            width of the image
+	 * @param hei
+	 *            height of the image
+	 * @param labels
+	 *            row-major array to be filled with the labels
+	 * @param stats
+	 *            accumulators to fill, or null
+	 * @return the number of components
+	 */
+	private int labelRuns(int wid, int hei, int[] labels, LabelStatistics stats) {
+		this.stats = stats;
+		// every run makes at most one label
+		equi = unionFind.apply(runs + 1);
+		labelCount = 1;
+		count = 0;
+		unionCalls = 0;
+		try {
+			// with 8-connectivity a run also touches the runs that end just
+			// before it or start just after it on the previous row
+			int slack = connectivity == Connectivity.EIGHT ? 1 : 0;
+
+			for (int y = 0; y < hei; y++) {
+				if (y % Cancellation.ROWS == 0)
+					Cancellation.checkpoint(y, hei);
+				int p = y > 0 ? rowFirstRun[y - 1] : 0;
+				int prevEnd = y > 0 ? rowFirstRun[y] : 0;
+				for (int r = rowFirstRun[y], end = rowFirstRun[y + 1]; r < end; r++) {
+					int from = runStart[r] - slack;
+					int to = runEnd[r] + slack;
+					// runs of the previous row are sorted, so the ones left of
+					// this run are left of the next runs too
+					while (p < prevEnd && runEnd[p] <= from)
+						p++;
+					int l = 0;
+					// the last run overlapped can overlap the next run as well,
+					// so p stays on it
+					for (int q = p; q < prevEnd && runStart[q] < to; q++) {
+						if (l == 0)
+							l = runLabel[q];
+						else if (runLabel[q] != l && union(l, runLabel[q]))
+							count--;
+					}
+					if (l == 0)
+						l = newLabel();
+					runLabel[r] = l;
+					if (stats != null)
+						stats.addRun(l, y, runStart[r], runEnd[r] - 1);
+				}
+			}
+
+			// Runs added to a label after it stopped being a root are folded into
+			// its root
+			if (stats != null) {
+				for (int l = 1; l < labelCount; l++) {
+					int root = equi.find(l);
+					if (root != l && stats.getArea(l) > 0)
+						stats.fold(l, root);
+				}
+			}
+
+			// Every run is written with the final label of its root, 1 to count
+			// in memory order, the gaps between them with 0
+			int[] compacted = new int[labelCount];
+			for (int y = 0, m = 0; y < hei; y++) {
+				int row = y * wid;
+				int x = 0;
+				for (int r = rowFirstRun[y], end = rowFirstRun[y + 1]; r < end; r++) {
+					int root = equi.find(runLabel[r]);
+					if (compacted[root] == 0)
+						compacted[root] = ++m;
+					Arrays.fill(labels, row + x, row + runStart[r], 0);
+					Arrays.fill(labels, row + runStart[r], row + runEnd[r], compacted[root]);
+					x = runEnd[r];
+				}
+				Arrays.fill(labels, row + x, row + wid, 0);
+			}
+			if (stats != null)
+				stats.renumber(compacted, count);
+			return count;
+		} catch (CancellationException e) {
+			forgetRuns();
+			throw e;
+		} finally {
+			equi = null;
+			this.stats = null;
+		}
+	}
+
+	/**
+	 * Make a provisional label for a run that overlaps no run of the
+	 * previous row
+	 *
+	 * @return the new label
+	 */
+	private int newLabel() {
+		int l = equi.makeSet();
+		if (stats != null)
+			stats.reset(l);
+		labelCount++;
+		count++;
+		return l;
+	}
+
+	/**
+	 * Union two labels and fold the accumulators of the root that is linked
+	 * under the other one
+	 *
+	 * @param p
+	 * @param q
+	 * @return true if the labels were not connected before
+	 */
+	private boolean union(int p, int q) {
+		unionCalls++;
+		int pRoot = equi.find(p);
+		int qRoot = equi.find(q);
+		if (pRoot == qRoot)
+			return false;
+		equi.union(pRoot, qRoot);
+		if (stats != null) {
+			int root = equi.find(pRoot);
+			stats.fold(root == pRoot ? qRoot : pRoot, root);
+		}
+		return true;
+	}
+}
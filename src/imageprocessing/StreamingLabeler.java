@@ -0,0 +1,407 @@
+package imageprocessing;
+
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+
+/**
+ * Streaming run-based labeling for images that do not fit in memory. The
+ * image is decoded a band of rows at a time with ImageReadParam's source
+ * region, each band is binarized with a fixed threshold and its rows are cut
+ * into foreground runs as in RunLabeler. Only the runs of the previous row are
+ * kept, with the union-find and the statistics of the components they
+ * belong to, so memory grows with the width of the image and not with its
+ * area. A component is handed to the listener as soon as a row has no run
+ * that touches it, since no later row can reach it then.
+ *
+ * After each row the live components are numbered 1 to k again, so the
+ * labels stay below the width of the image however many components it has.
+ * Readers that cannot seek to a row, such as PNG, decode the rows before each
+ * band again, so larger bands are faster for them. Every Cancellation.ROWS
+ * rows the labeling calls Cancellation.checkpoint()
+ *
+ * @author Thai Kha Le
+ *
+ */
+public class StreamingLabeler {
+
+	/**
+	 * Receives the components of the image as they are finished
+	 */
+	public interface Listener {
+
+		/**
+		 * Called once per component, from the top of the image down in the
+		 * order of their last row
+		 *
+		 * @param stats
+		 *            the accumulators, only valid during the call
+		 * @param label
+		 *            the label of the component in stats, only valid during
+		 *            the call
+		 */
+		void finished(LabelStatistics stats, int label);
+	}
+
+	private final Connectivity connectivity;
+	private final FixedThreshold threshold;
+	private final int bandRows;
+	private final int subsampling;
+
+	private int[] prevStart, prevEnd, prevLabel; // runs of the previous row
+	private int[] curStart, curEnd, curLabel; // runs of the row being labeled
+	private int prevRuns, curRuns;
+	private int[] parent; // union-find over the labels of both rows
+	private int[] seen; // last row a root had a run on
+	private int[] compacted; // label of each live root on the next row
+	private LabelStatistics stats;
+	private int live; // components of the previous row, labeled 1 to live
+	private int count; // components finished
+	private int peakLive; // largest number of live components
+	private Listener listener;
+	private int rows; // rows of the image, once subsampled
+
+	/**
+	 * Constructor, with 4-connectivity, bands of 256 rows and every pixel
+	 *
+	 * @param threshold
+	 *            the fixed threshold that binarizes each band
+	 */
+	public StreamingLabeler(FixedThreshold threshold) {
+		this(threshold, Connectivity.FOUR, 256, 1);
+	}
+
+	/**
+	 * Constructor
+	 *
+	 * @param threshold
+	 *            the fixed threshold that binarizes each band, a threshold
+	 *            that needs the whole picture cannot be streamed
+	 * @param connectivity
+	 *            the neighbourhood of a pixel
+	 * @param bandRows
+	 *            number of rows decoded at once
+	 * @param subsampling
+	 *            1 to read every pixel, n to read every n-th pixel of every
+	 *            n-th row, the statistics are then in subsampled coordinates
+	 */
+	public StreamingLabeler(FixedThreshold threshold, Connectivity connectivity, int bandRows, int subsampling) {
+		if (bandRows < 1 || subsampling < 1)
+			throw new IllegalArgumentException("Band rows and subsampling must be positive");
+		this.threshold = threshold;
+		this.connectivity = connectivity;
+		this.bandRows = bandRows;
+		this.subsampling = subsampling;
+	}
+
+	/**
+	 * Get the largest number of components the last run kept at once
+	 *
+	 * @return number of live components
+	 */
+	public int getPeakLive() {
+		return peakLive;
+	}
+
+	/**
+	 * Label an image file band by band
+	 *
+	 * @param file
+	 *            the image
+	 * @param listener
+	 *            receives each component once it is finished
+	 * @return the number of components
+	 * @throws IOException
+	 *             if the file cannot be read or no reader knows its format
+	 */
+	public int label(File file, Listener listener) throws IOException {
+		try (ImageInputStream in = ImageIO.createImageInputStream(file)) {
+			if (in == null)
+				throw new IOException("Cannot open " + file);
+			Iterator<ImageReader> readers = ImageIO.getImageReaders(in);
+			if (!readers.hasNext())
+				throw new IOException("No reader for " + file);
+			ImageReader reader = readers.next();
+			try {
+				reader.setInput(in, true, true);
+				return label(reader, listener);
+			} finally {
+				reader.dispose();
+			}
+		}
+	}
+
+	/**
+	 * Label the first image of a reader band by band
+	 *
+	 * @param reader
+	 *            a reader whose input is set
+	 * @param listener
+	 *            receives each component once it is finished
+	 * @return the number of components
+	 * @throws IOException
+	 *             if a band cannot be read
+	 */
+	public int label(ImageReader reader, Listener listener) throws IOException {
+		int wid = reader.getWidth(0);
+		int hei = reader.getHeight(0);
+		int step = subsampling;
+		int outWid = (wid + step - 1) / step;
+		start(outWid, (hei + step - 1) / step, listener);
+		ImageReadParam param = reader.getDefaultReadParam();
+		param.setSourceSubsampling(step, step, 0, 0);
+		// a band starts on a row that is read, so the bands line up with the
+		// grid of the subsampling
+		int bandHeight = bandRows * step;
+		int y = 0;
+		for (int from = 0; from < hei; from += bandHeight) {
+			param.setSourceRegion(new Rectangle(0, from, wid, Math.min(bandHeight, hei - from)));
+			BufferedImage band = reader.read(0, param);
+			byte[] mask = Binarizer.binarize(band, threshold.getLevel(), threshold.isDarkForeground());
+			for (int row = 0; row < band.getHeight(); row++)
+				row(mask, row * outWid, outWid, y++);
+		}
+		return finish();
+	}
+
+	/**
+	 * Label a memory-mapped image row by row, each row is binarized straight
+	 * from the mapping
+	 *
+	 * @param image
+	 *            the mapped image
+	 * @param listener
+	 *            receives each component once it is finished
+	 * @return the number of components
+	 */
+	public int label(MappedImage image, Listener listener) {
+		int wid = image.getWidth();
+		int hei = image.getHeight();
+		int step = subsampling;
+		int outWid = (wid + step - 1) / step;
+		start(outWid, (hei + step - 1) / step, listener);
+		byte[] row = new byte[wid];
+		for (int y = 0, out = 0; y < hei; y += step, out++) {
+			image.binarizeRow(y, threshold.getLevel(), threshold.isDarkForeground(), row, 0);
+			for (int x = 0, k = 0; x < wid; x += step, k++)
+				row[k] = row[x];
+			row(row, 0, outWid, out);
+		}
+		return finish();
+	}
+
+	/**
+	 * Label a mask already in memory row by row, as the bands of an image
+	 * would be
+	 *
+	 * @param mask
+	 *            row-major mask, 1 for foreground and 0 for background
+	 * @param wid
+	 *            width of the image
+	 * @param hei
+	 *            height of the image
+	 * @param listener
+	 *            receives each component once it is finished
+	 * @return the number of components
+	 */
+	public int label(byte[] mask, int wid, int hei, Listener listener) {
+		start(wid, hei, listener);
+		for (int y = 0; y < hei; y++)
+			row(mask, y * wid, wid, y);
+		return finish();
+	}
+
+	/**
+	 * Make the arrays of an image. A row holds at most (wid + 1) / 2 runs, so
+	 * both rows together need at most wid + 1 labels
+	 *
+	 * @param wid
+	 *            width of the image
+	 * @param hei
+	 *            height of the image
+	 * @param listener
+	 */
+	private void start(int wid, int hei, Listener listener) {
+		int runs = (wid + 1) / 2 + 1;
+		prevStart = new int[runs];
+		prevEnd = new int[runs];
+		prevLabel = new int[runs];
+		curStart = new int[runs];
+		curEnd = new int[runs];
+		curLabel = new int[runs];
+		parent = new int[2 * runs];
+		seen = new int[2 * runs];
+		compacted = new int[2 * runs];
+		stats = new LabelStatistics(2 * runs);
+		prevRuns = 0;
+		live = 0;
+		count = 0;
+		peakLive = 0;
+		this.listener = listener;
+		rows = hei;
+	}
+
+	/**
+	 * Label one row against the runs of the previous row, then hand over the
+	 * components it ended and number the live ones 1 to k
+	 *
+	 * @param mask
+	 *            row-major mask holding the row
+	 * @param offset
+	 *            index of the first pixel of the row in mask
+	 * @param wid
+	 *            width of the row
+	 * @param y
+	 *            the row
+	 */
+	private void row(byte[] mask, int offset, int wid, int y) {
+		if (y % Cancellation.ROWS == 0)
+			Cancellation.checkpoint(y, rows);
+		curRuns = 0;
+		for (int x = 0; x < wid; x++) {
+			if (mask[offset + x] == 0)
+				continue;
+			int start = x;
+			while (x < wid && mask[offset + x] != 0)
+				x++;
+			curStart[curRuns] = start;
+			curEnd[curRuns] = x;
+			curRuns++;
+		}
+
+		// labels 1 to live are the components of the previous row, new
+		// labels come after them
+		int n = live;
+		for (int l = 1; l <= live; l++)
+			parent[l] = l;
+		int slack = connectivity == Connectivity.EIGHT ? 1 : 0;
+		for (int r = 0, p = 0; r < curRuns; r++) {
+			int from = curStart[r] - slack;
+			int to = curEnd[r] + slack;
+			while (p < prevRuns && prevEnd[p] <= from)
+				p++;
+			int l = 0;
+			for (int q = p; q < prevRuns && prevStart[q] < to; q++) {
+				if (l == 0)
+					l = prevLabel[q];
+				else
+					union(l, prevLabel[q]);
+			}
+			if (l == 0) {
+				l = ++n;
+				parent[l] = l;
+				stats.reset(l);
+			}
+			curLabel[r] = l;
+			stats.addRun(find(l), y, curStart[r], curEnd[r] - 1);
+		}
+
+		for (int r = 0; r < curRuns; r++)
+			seen[find(curLabel[r])] = y + 1;
+		// a root of the previous row that no run of this row reached is
+		// finished, new labels always have a run
+		for (int l = 1; l <= live; l++) {
+			if (parent[l] == l && seen[l] != y + 1)
+				finished(l);
+		}
+
+		// Number the live roots 1 to k in increasing order. The j-th root is
+		// at least j, and a root below it has already moved, so slot j is
+		// free to take it
+		int k = 0;
+		for (int l = 1; l <= n; l++) {
+			if (parent[l] != l || seen[l] != y + 1)
+				continue;
+			compacted[l] = ++k;
+			if (k != l) {
+				stats.reset(k);
+				stats.fold(l, k);
+			}
+		}
+		for (int r = 0; r < curRuns; r++)
+			curLabel[r] = compacted[find(curLabel[r])];
+		live = k;
+		peakLive = Math.max(peakLive, k);
+
+		int[] t = prevStart;
+		prevStart = curStart;
+		curStart = t;
+		t = prevEnd;
+		prevEnd = curEnd;
+		curEnd = t;
+		t = prevLabel;
+		prevLabel = curLabel;
+		curLabel = t;
+		prevRuns = curRuns;
+	}
+
+	/**
+	 * Hand over the components still live after the last row
+	 *
+	 * @return the number of components
+	 */
+	private int finish() {
+		for (int l = 1; l <= live; l++)
+			finished(l);
+		live = 0;
+		int total = count;
+		prevStart = prevEnd = prevLabel = curStart = curEnd = curLabel = null;
+		parent = seen = compacted = null;
+		stats = null;
+		listener = null;
+		return total;
+	}
+
+	/**
+	 * Hand over a finished component
+	 *
+	 * @param label
+	 */
+	private void finished(int label) {
+		count++;
+		if (listener != null)
+			listener.finished(stats, label);
+	}
+
+	/**
+	 * Chase the root of a label, halving the path on the way
+	 *
+	 * @param p
+	 * @return root of p
+	 */
+	private int find(int p) {
+		while (parent[p] != p) {
+			parent[p] = parent[parent[p]];
+			p = parent[p];
+		}
+		return p;
+	}
+
+	/**
+	 * Union two labels, the larger root goes under the smaller one and its
+	 * accumulators are folded into it
+	 *
+	 * @param p
+	 * @param q
+	 */
+	private void union(int p, int q) {
+		p = find(p);
+		q = find(q);
+		if (p == q)
+			return;
+		if (p > q) {
+			int t = p;
+			p = q;
+			q = t;
+		}
+		parent[q] = p;
+		stats.fold(q, p);
+	}
+}
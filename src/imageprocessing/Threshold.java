@@ -0,0 +1,61 @@
+package imageprocessing;
+
+import java.awt.image.BufferedImage;
+
+import edu.princeton.cs.introcs.Picture;
+
+/**
+ * Strategy that decides which pixels of a picture are the foreground
+ *
+ * @author Thai Kha Le
+ *
+ */
+public interface Threshold {
+
+	/**
+	 * Binarize a decoded image
+	 *
+	 * @param image
+	 *            the image
+	 * @return row-major mask, 1 for a foreground pixel and 0 otherwise
+	 */
+	byte[] binarize(BufferedImage image);
+
+	/**
+	 * Binarize a decoded image into a packed mask. This default packs the
+	 * byte mask of binarize(), thresholds that decide each pixel on its own
+	 * override it to pack row by row
+	 *
+	 * @param image
+	 *            the image
+	 * @return the packed mask
+	 */
+	default BitMask binarizeBits(BufferedImage image) {
+		return BitMask.pack(binarize(image), image.getWidth(), image.getHeight());
+	}
+
+	/**
+	 * Binarize a picture through the image that backs it
+	 *
+	 * @param picture
+	 *            the picture
+	 * @return row-major mask, 1 for a foreground pixel and 0 otherwise
+	 */
+	default byte[] binarize(Picture picture) {
+		BufferedImage image = PictureRaster.getImage(picture);
+		if (image == null) {
+			image = new BufferedImage(picture.width(), picture.height(), BufferedImage.TYPE_INT_RGB);
+			image.setRGB(0, 0, picture.width(), picture.height(), PictureRaster.readRGB(picture), 0,
+					picture.width());
+		}
+		return binarize(image);
+	}
+
+	/**
+	 * Tell which side of the threshold is the foreground
+	 *
+	 * @return true if the dark pixels are the foreground, false if the bright
+	 *         ones are
+	 */
+	boolean isDarkForeground();
+}
@@ -0,0 +1,576 @@
+package imageprocessing;
+
+import java.util.Arrays;
+import java.util.function.IntFunction;
+
+/**
+ * Two-pass connected component labeling on a primitive binary mask, with
+ * 4-connectivity or 8-connectivity. Neighbours are read from the mask and the
+ * labels array, so no object is created per pixel. The 8-connectivity pass
+ * follows the decision tree of Wu et al., which reads the neighbours one at a
+ * time and stops as soon as the label is known
+ *
+ * @author Thai Kha Le
+ *
+ */
+public class TwoPassLabeler implements Labeler {
+
+	/**
+	 * Order in which the passes visit the pixels. The mask and the labels are
+	 * stored row by row, so a row-major scan walks memory sequentially while
+	 * a column-major scan jumps a whole row on every step
+	 */
+	public enum ScanOrder {
+		ROW_MAJOR, COLUMN_MAJOR
+	}
+
+	private final ScanOrder order;
+	private final Connectivity connectivity;
+	private final IntFunction<? extends GrowableUnionFind> unionFind;
+	private GrowableUnionFind equi; // equivalence table
+	private LabelStatistics stats; // accumulators, null if not collected
+	private int labelCount; // provisional labels made, label 0 included
+	private int count; // number of components
+	private int unionCalls; // unions asked for by the first pass
+
+	/**
+	 * Constructor, scans row by row
+	 */
+	public TwoPassLabeler() {
+		this(ScanOrder.ROW_MAJOR);
+	}
+
+	/**
+	 * Constructor, scans row by row
+	 *
+	 * @param connectivity
+	 *            the neighbourhood of a pixel
+	 */
+	public TwoPassLabeler(Connectivity connectivity) {
+		this(ScanOrder.ROW_MAJOR, connectivity, WeightedUnionFind::new);
+	}
+
+	/**
+	 * Constructor
+	 *
+	 * @param order
+	 *            the order in which the passes visit the pixels
+	 */
+	public TwoPassLabeler(ScanOrder order) {
+		this(order, WeightedUnionFind::new);
+	}
+
+	/**
+	 * Constructor
+	 *
+	 * @param order
+	 *            the order in which the passes visit the pixels
+	 * @param unionFind
+	 *            creates the equivalence table of each run, given the number
+	 *            of labels to make room for at first. The table must grow
+	 *            as more labels are made
+	 */
+	public TwoPassLabeler(ScanOrder order, IntFunction<? extends GrowableUnionFind> unionFind) {
+		this(order, Connectivity.FOUR, unionFind);
+	}
+
+	/**
+	 * Constructor
+	 *
+	 * @param order
+	 *            the order in which the passes visit the pixels
+	 * @param connectivity
+	 *            the neighbourhood of a pixel
+	 * @param unionFind
+	 *            creates the equivalence table of each run, given the number
+	 *            of labels to make room for at first. The table must grow
+	 *            as more labels are made
+	 */
+	public TwoPassLabeler(ScanOrder order, Connectivity connectivity, IntFunction<? extends GrowableUnionFind> unionFind) {
+		this.order = order;
+		this.connectivity = connectivity;
+		this.unionFind = unionFind;
+	}
+
+	/**
+	 * Order getter
+	 *
+	 * @return the order in which the passes visit the pixels
+	 */
+	public ScanOrder getOrder() {
+		return order;
+	}
+
+	/**
+	 * Connectivity getter
+	 *
+	 * @return the neighbourhood of a pixel
+	 */
+	@Override
+	public Connectivity getConnectivity() {
+		return connectivity;
+	}
+
+	/**
+	 * Get the number of provisional labels the last run put in the
+	 * equivalence table
+	 *
+	 * @return number of labels made
+	 */
+	public int getProvisionalLabels() {
+		return labelCount - 1;
+	}
+
+	/**
+	 * Get the number of times the last run had to union two different labels
+	 *
+	 * @return number of union calls
+	 */
+	public int getUnionCalls() {
+		return unionCalls;
+	}
+
+	/**
+	 * Label the foreground pixels of a binary mask
+	 *
+	 * @param mask
+	 *            row-major mask, 1 for foreground and 0 for background
+	 * @param wid
+	 *            width of the image
+	 * @param hei
+	 *            height of the image
+	 * @param labels
+	 *            row-major array to be filled with the labels
+	 * @return the number of components
+	 */
+	@Override
+	public int label(byte[] mask, int wid, int hei, int[] labels) {
+		return scan(mask, null, wid, 0, hei, order == ScanOrder.ROW_MAJOR, labels, null);
+	}
+
+	/**
+	 * Label the foreground pixels of a binary mask and accumulate the
+	 * features of every component. Each pixel is added to its provisional
+	 * label and the accumulators are folded together when labels are unioned
+	 *
+	 * @param mask
+	 *            row-major mask, 1 for foreground and 0 for background
+	 * @param wid
+	 *            width of the image
+	 * @param hei
+	 *            height of the image
+	 * @param labels
+	 *            row-major array to be filled with the labels
+	 * @param stats
+	 *            empty accumulators to fill, indexed by label
+	 * @return the number of components
+	 */
+	@Override
+	public int label(byte[] mask, int wid, int hei, int[] labels, LabelStatistics stats) {
+		return scan(mask, null, wid, 0, hei, order == ScanOrder.ROW_MAJOR, labels, stats);
+	}
+
+	/**
+	 * Tell if the engine reads a packed mask without unpacking it first
+	 *
+	 * @return true in row-major order, a column-major scan unpacks the mask
+	 */
+	@Override
+	public boolean readsBits() {
+		return order == ScanOrder.ROW_MAJOR;
+	}
+
+	/**
+	 * Label the foreground pixels of a packed mask. In row-major order only
+	 * the foreground runs are visited one pixel at a time
+	 *
+	 * @param mask
+	 *            the packed mask
+	 * @param labels
+	 *            row-major array to be filled with the labels
+	 * @return the number of components
+	 */
+	@Override
+	public int label(BitMask mask, int[] labels) {
+		if (order != ScanOrder.ROW_MAJOR)
+			return Labeler.super.label(mask, labels);
+		return scan(null, mask, mask.getWidth(), 0, mask.getHeight(), true, labels, null);
+	}
+
+	/**
+	 * Label the foreground pixels of a packed mask and accumulate the
+	 * features of every component
+	 *
+	 * @param mask
+	 *            the packed mask
+	 * @param labels
+	 *            row-major array to be filled with the labels
+	 * @param stats
+	 *            empty accumulators to fill, indexed by label
+	 * @return the number of components
+	 */
+	@Override
+	public int label(BitMask mask, int[] labels, LabelStatistics stats) {
+		if (order != ScanOrder.ROW_MAJOR)
+			return Labeler.super.label(mask, labels, stats);
+		return scan(null, mask, mask.getWidth(), 0, mask.getHeight(), true, labels, stats);
+	}
+
+	/**
+	 * Label a band of rows as if it were an image of its own, scanning row by
+	 * row
+	 *
+	 * @param mask
+	 *            row-major mask of the whole image
+	 * @param wid
+	 *            width of the image
+	 * @param rowFrom
+	 *            first row of the band
+	 * @param rowTo
+	 *            row after the last row of the band
+	 * @param labels
+	 *            row-major array of the whole image, only the band is written
+	 * @return m, the number of components in the band
+	 */
+	int labelRows(byte[] mask, int wid, int rowFrom, int rowTo, int[] labels) {
+		return scan(mask, null, wid, rowFrom, rowTo - rowFrom, true, labels, null);
+	}
+
+	/**
+	 * Label a band of rows of a packed mask as if it were an image of its
+	 * own, scanning row by row
+	 *
+	 * @param mask
+	 *            packed mask of the whole image
+	 * @param rowFrom
+	 *            first row of the band
+	 * @param rowTo
+	 *            row after the last row of the band
+	 * @param labels
+	 *            row-major array of the whole image, only the band is written
+	 * @return m, the number of components in the band
+	 */
+	int labelRows(BitMask mask, int rowFrom, int rowTo, int[] labels) {
+		return scan(null, mask, mask.getWidth(), rowFrom, rowTo - rowFrom, true, labels, null);
+	}
+
+	/**
+	 * The two-pass scan of a band of rows. The components are numbered 1 to
+	 * count in the order their first pixel comes in memory. The first pass
+	 * calls Cancellation.checkpoint() every Cancellation.ROWS lines
+	 *
+	 * @param mask
+	 *            row-major mask, 1 for foreground and 0 for background, or
+	 *            null if bits is given
+	 * @param bits
+	 *            packed mask scanned row by row instead of mask, or null
+	 * @param wid
+	 *            width of the image
+	 * @param rowFrom
+	 *            first row of the band
+	 * @param hei
+	 *            number of rows of the band
+	 * @param rowMajor
+	 *            true to scan row by row, false to scan column by column
+	 * @param labels
+	 *            row-major array to be filled with the labels
+	 * @param stats
+	 *            accumulators to fill, or null
+	 * @return the number of components
+	 */
+	private int scan(byte[] mask, BitMask bits, int wid, int rowFrom, int hei, boolean rowMajor, int[] labels,
+			LabelStatistics stats) {
+		this.stats = stats;
+		// the table starts with room for the labels of one line and grows
+		// with the labels made, which are far fewer than the pixels
+		equi = unionFind.apply((rowMajor ? wid : hei) / 2 + 2);
+		labelCount = 1;
+		count = 0;
+		unionCalls = 0;
+
+		try {
+			// A scan line is a row in row-major order and a column in
+			// column-major order. The previous pixel on the line and the pixel at
+			// the same place on the previous line are the left and above
+			// neighbours, in either order
+			int base = rowFrom * wid;
+			int lines = rowMajor ? hei : wid;
+			int lineLength = rowMajor ? wid : hei;
+			int lineStep = rowMajor ? wid : 1; // distance to the previous line
+			int step = rowMajor ? 1 : wid; // distance to the previous pixel
+
+			// First pass, each connectivity has its own loop so that a run does
+			// not test the neighbours of the other one
+			if (bits != null)
+				firstPassRuns(bits, rowFrom, hei, labels);
+			else if (connectivity == Connectivity.EIGHT)
+				firstPass8(mask, base, lines, lineLength, lineStep, step, rowMajor, rowFrom, labels);
+			else
+				firstPass4(mask, base, lines, lineLength, lineStep, step, rowMajor, rowFrom, labels);
+
+			// Pixels added to a label after it stopped being a root are folded
+			// into its root
+			if (stats != null) {
+				for (int l = 1; l < labelCount; l++) {
+					int root = equi.find(l);
+					if (root != l && stats.getArea(l) > 0)
+						stats.fold(l, root);
+				}
+			}
+
+			// Second pass, every label is replaced by the final label of its root
+			// in memory order
+			int[] compacted = new int[labelCount];
+			for (int id = base, end = base + wid * hei, m = 0; id < end; id++) {
+				if (labels[id] == 0)
+					continue;
+				int root = equi.find(labels[id]);
+				if (compacted[root] == 0)
+					compacted[root] = ++m;
+				labels[id] = compacted[root];
+			}
+			if (stats != null)
+				stats.renumber(compacted, count);
+			return count;
+		} finally {
+			// also when the first pass is stopped, see Cancellation
+			equi = null;
+			this.stats = null;
+		}
+	}
+
+	/**
+	 * First pass with 4-connectivity
+	 *
+	 * @param mask
+	 * @param base
+	 *            index of the first pixel of the band
+	 * @param lines
+	 *            number of scan lines
+	 * @param lineLength
+	 *            number of pixels of a scan line
+	 * @param lineStep
+	 *            distance to the pixel at the same place on the previous line
+	 * @param step
+	 *            distance to the previous pixel on the line
+	 * @param rowMajor
+	 *            true if a scan line is a row
+	 * @param rowFrom
+	 *            first row of the band
+	 * @param labels
+	 */
+	private void firstPass4(byte[] mask, int base, int lines, int lineLength, int lineStep, int step,
+			boolean rowMajor, int rowFrom, int[] labels) {
+		for (int line = 0; line < lines; line++) {
+			if (line % Cancellation.ROWS == 0)
+				Cancellation.checkpoint(line, lines);
+			for (int k = 0, id = base + line * lineStep; k < lineLength; k++, id += step) {
+				if (mask[id] == 0) {
+					labels[id] = 0;
+					continue;
+				}
+				int l = pixel4(labels, id, k, line, lineStep, step);
+				labels[id] = l;
+				if (stats != null)
+					stats.add(l, rowMajor ? k : line, rowFrom + (rowMajor ? line : k));
+			}
+		}
+	}
+
+	/**
+	 * First pass with 8-connectivity
+	 *
+	 * @param mask
+	 * @param base
+	 *            index of the first pixel of the band
+	 * @param lines
+	 *            number of scan lines
+	 * @param lineLength
+	 *            number of pixels of a scan line
+	 * @param lineStep
+	 *            distance to the pixel at the same place on the previous line
+	 * @param step
+	 *            distance to the previous pixel on the line
+	 * @param rowMajor
+	 *            true if a scan line is a row
+	 * @param rowFrom
+	 *            first row of the band
+	 * @param labels
+	 */
+	private void firstPass8(byte[] mask, int base, int lines, int lineLength, int lineStep, int step,
+			boolean rowMajor, int rowFrom, int[] labels) {
+		int last = lineLength - 1;
+		for (int line = 0; line < lines; line++) {
+			if (line % Cancellation.ROWS == 0)
+				Cancellation.checkpoint(line, lines);
+			for (int k = 0, id = base + line * lineStep; k < lineLength; k++, id += step) {
+				if (mask[id] == 0) {
+					labels[id] = 0;
+					continue;
+				}
+				int l = pixel8(labels, id, k, line, last, lineStep, step);
+				labels[id] = l;
+				if (stats != null)
+					stats.add(l, rowMajor ? k : line, rowFrom + (rowMajor ? line : k));
+			}
+		}
+	}
+
+	/**
+	 * First pass over the foreground runs of a bit mask, row by row. The
+	 * background between the runs is cleared in one fill and its pixels are
+	 * never tested one by one
+	 *
+	 * @param mask
+	 * @param rowFrom
+	 *            first row of the band
+	 * @param hei
+	 *            number of rows of the band
+	 * @param labels
+	 */
+	private void firstPassRuns(BitMask mask, int rowFrom, int hei, int[] labels) {
+		int wid = mask.getWidth();
+		boolean eight = connectivity == Connectivity.EIGHT;
+		for (int line = 0; line < hei; line++) {
+			if (line % Cancellation.ROWS == 0)
+				Cancellation.checkpoint(line, hei);
+			int y = rowFrom + line;
+			int row = y * wid;
+			for (int x = 0; x < wid;) {
+				int start = mask.nextSetBit(y, x);
+				Arrays.fill(labels, row + x, row + start, 0);
+				if (start == wid)
+					break;
+				int end = mask.nextClearBit(y, start);
+				// the connectivity is chosen once per run, not per pixel
+				if (eight) {
+					for (int k = start, id = row + start; k < end; k++, id++) {
+						int l = pixel8(labels, id, k, line, wid - 1, wid, 1);
+						labels[id] = l;
+						if (stats != null)
+							stats.add(l, k, y);
+					}
+				} else {
+					for (int k = start, id = row + start; k < end; k++, id++) {
+						int l = pixel4(labels, id, k, line, wid, 1);
+						labels[id] = l;
+						if (stats != null)
+							stats.add(l, k, y);
+					}
+				}
+				x = end;
+			}
+		}
+	}
+
+	/**
+	 * Label a foreground pixel with 4-connectivity, it takes the smaller
+	 * label of the pixels before it and on the previous line
+	 *
+	 * @param labels
+	 * @param id
+	 *            index of the pixel
+	 * @param k
+	 *            place of the pixel on its line
+	 * @param line
+	 *            line of the pixel in the band
+	 * @param lineStep
+	 *            distance to the pixel at the same place on the previous line
+	 * @param step
+	 *            distance to the previous pixel on the line
+	 * @return the provisional label
+	 */
+	private int pixel4(int[] labels, int id, int k, int line, int lineStep, int step) {
+		int labelBefore = k > 0 ? labels[id - step] : 0;
+		int labelPrevLine = line > 0 ? labels[id - lineStep] : 0;
+
+		if (labelBefore != 0 && labelPrevLine != 0) {
+			if (labelBefore != labelPrevLine && union(labelBefore, labelPrevLine))
+				count--;
+			return labelBefore < labelPrevLine ? labelBefore : labelPrevLine;
+		} else if (labelBefore != 0) {
+			return labelBefore;
+		} else if (labelPrevLine != 0) {
+			return labelPrevLine;
+		}
+		return newLabel();
+	}
+
+	/**
+	 * Label a foreground pixel with 8-connectivity. With b the pixel on the
+	 * previous line, a and c the pixels before and after it and d the pixel
+	 * before on the line, the decision tree of Wu et al. only reads what it
+	 * needs: b connects to all others, so it is taken alone; otherwise c
+	 * takes a or d along with a union; otherwise a or d is taken alone
+	 *
+	 * @param labels
+	 * @param id
+	 *            index of the pixel
+	 * @param k
+	 *            place of the pixel on its line
+	 * @param line
+	 *            line of the pixel in the band
+	 * @param last
+	 *            place of the last pixel of a line
+	 * @param lineStep
+	 *            distance to the pixel at the same place on the previous line
+	 * @param step
+	 *            distance to the previous pixel on the line
+	 * @return the provisional label
+	 */
+	private int pixel8(int[] labels, int id, int k, int line, int last, int lineStep, int step) {
+		int up = id - lineStep;
+		if (line > 0 && labels[up] != 0)
+			return labels[up];
+		if (line > 0 && k < last && labels[up + step] != 0) {
+			int l = labels[up + step];
+			int other = k > 0 ? labels[up - step] : 0;
+			if (other == 0 && k > 0)
+				other = labels[id - step];
+			if (other != 0 && other != l && union(l, other))
+				count--;
+			return l;
+		}
+		if (line > 0 && k > 0 && labels[up - step] != 0)
+			return labels[up - step];
+		if (k > 0 && labels[id - step] != 0)
+			return labels[id - step];
+		return newLabel();
+	}
+
+	/**
+	 * Make a provisional label for a pixel that has no labeled neighbour
+	 *
+	 * @return the new label
+	 */
+	private int newLabel() {
+		int l = equi.makeSet();
+		if (stats != null)
+			stats.reset(l);
+		labelCount++;
+		count++;
+		return l;
+	}
+
+	/**
+	 * Union two labels and fold the accumulators of the root that is linked
+	 * under the other one
+	 *
+	 * @param p
+	 * @param q
+	 * @return true if the labels were not connected before
+	 */
+	private boolean union(int p, int q) {
+		unionCalls++;
+		int pRoot = equi.find(p);
+		int qRoot = equi.find(q);
+		if (pRoot == qRoot)
+			return false;
+		equi.union(pRoot, qRoot);
+		if (stats != null) {
+			int root = equi.find(pRoot);
+			stats.fold(root == pRoot ? qRoot : pRoot, root);
+		}
+		return true;
+	}
+}
@@ -0,0 +1,136 @@
+package imageprocessing;
+
+import java.util.Arrays;
+
+/**
+ * Union-find with union by size and full path compression. Parents and sizes
+ * are kept in primitive arrays that grow as sets are made, and find() is
+ * iterative, so long chains cannot overflow the stack and no call allocates
+ *
+ * @author Thai Kha Le
+ *
+ */
+public class WeightedUnionFind implements GrowableUnionFind {
+
+	private int[] parent, size;
+	private int n; // number of elements, element 0 included
+	private int count; // number of sets
+
+	/**
+	 * Constructor
+	 */
+	public WeightedUnionFind() {
+		this(16);
+	}
+
+	/**
+	 * Constructor
+	 *
+	 * @param capacity
+	 *            expected number of elements, the arrays grow past it
+	 */
+	public WeightedUnionFind(int capacity) {
+		capacity = Math.max(capacity, 2);
+		parent = new int[capacity];
+		size = new int[capacity];
+		n = 1; // element 0 is the background
+	}
+
+	/**
+	 * Add a new component that only contains itself
+	 *
+	 * @return the new element, starting from 1
+	 */
+	@Override
+	public int makeSet() {
+		if (n == parent.length) {
+			parent = Arrays.copyOf(parent, 2 * n);
+			size = Arrays.copyOf(size, 2 * n);
+		}
+		parent[n] = n;
+		size[n] = 1;
+		count++;
+		return n++;
+	}
+
+	/**
+	 * Get the number of components
+	 *
+	 * @return number of sets
+	 */
+	public int count() {
+		return count;
+	}
+
+	/**
+	 * Union two components, the root of the smaller one is linked under the
+	 * root of the bigger one
+	 *
+	 * @param p
+	 * @param q
+	 */
+	@Override
+	public void union(int p, int q) {
+		int pRoot = find(p);
+		int qRoot = find(q);
+		if (pRoot == qRoot)
+			return;
+		if (size[pRoot] < size[qRoot] || (size[pRoot] == size[qRoot] && qRoot < pRoot)) {
+			parent[pRoot] = qRoot;
+			size[qRoot] += size[pRoot];
+		} else {
+			parent[qRoot] = pRoot;
+			size[pRoot] += size[qRoot];
+		}
+		count--;
+	}
+
+	/**
+	 * Chase the root of the component, kept for callers of the recursive
+	 * version. The depth is the number of elements on the path before it is
+	 * compressed
+	 *
+	 * @param p
+	 * @param depth
+	 *            initially 1
+	 * @return an array of size 2, including the root of p and the depth
+	 */
+	@Override
+	public int[] findRootR(int p, int depth) {
+		for (int i = p; parent[i] != i; i = parent[i])
+			depth++;
+		return new int[] { find(p), depth };
+	}
+
+	/**
+	 * Chase the root of the component, then point every element on the path
+	 * straight at it
+	 *
+	 * @param p
+	 * @return root of component p
+	 */
+	@Override
+	public int find(int p) {
+		int root = p;
+		while (parent[root] != root)
+			root = parent[root];
+		while (parent[p] != root) {
+			int next = parent[p];
+			parent[p] = root;
+			p = next;
+		}
+		return root;
+	}
+
+	/**
+	 * Check if two components are connected
+	 *
+	 * @param p
+	 * @param q
+	 * @return boolean value if they are connected
+	 */
+	@Override
+	public boolean connected(int p, int q) {
+		return find(p) == find(q);
+	}
+}
@@ -0,0 +1,107 @@
+package tests;
+
+import static org.junit.Assert.*;
+
+import java.awt.image.BufferedImage;
+import java.util.Random;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import imageprocessing.Binarizer;
+import imageprocessing.Luminance;
+import imageprocessing.OtsuThreshold;
+import imageprocessing.PictureRaster;
+
+public class TestBinarizer {
+
+	Random random;
+
+	@Before
+	public void setUp() throws Exception {
+		random = new Random(11);
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		random = null;
+	}
+
+	/**
+	 * C.O.R.R.E.C.T => Conformance / RIGHT B.I.C.E.P => Right, C
+	 * Test if every colour is binarized as the double formula of Luminance
+	 * does, the gray on the threshold included
+	 */
+	@Test
+	public void testMatchesLuminance() {
+		int[] rgb = new int[1 << 16];
+		for (int r = 0; r < 256; r++) {
+			for (int i = 0; i < rgb.length; i++)
+				rgb[i] = 0xFF000000 | r << 16 | i;
+			byte[] mask = Binarizer.binarize(rgb, 128, true);
+			for (int i = 0; i < rgb.length; i++)
+				assertEquals(Integer.toHexString(rgb[i]), Luminance.lum(rgb[i]) < 128, mask[i] == 1);
+		}
+	}
+
+	/**
+	 * RIGHT B.I.C.E.P => Right, I
+	 * Test if the bright foreground is the complement of the dark one
+	 */
+	@Test
+	public void testForegroundComplement() {
+		int[] rgb = randomPixels(1000);
+		byte[] dark = Binarizer.binarize(rgb, 100, true);
+		byte[] bright = Binarizer.binarize(rgb, 100, false);
+		for (int i = 0; i < rgb.length; i++) {
+			assertEquals(1, dark[i] + bright[i]);
+			assertEquals(Binarizer.luma(rgb[i]) < 100 * Binarizer.SCALE, dark[i] == 1);
+		}
+	}
+
+	/**
+	 * C.O.R.R.E.C.T => Conformance / RIGHT B.I.C.E.P => C
+	 * Test if the images read straight from their data buffer give the same
+	 * mask and histogram as their packed pixels, whatever the layout, also
+	 * when packed row by row
+	 */
+	@Test
+	public void testImageLayouts() {
+		int wid = 23, hei = 17;
+		int[] rgb = randomPixels(wid * hei);
+		int[] types = new int[] { BufferedImage.TYPE_INT_RGB, BufferedImage.TYPE_INT_ARGB,
+				BufferedImage.TYPE_3BYTE_BGR, BufferedImage.TYPE_4BYTE_ABGR, BufferedImage.TYPE_USHORT_565_RGB };
+		for (int type : types) {
+			BufferedImage image = new BufferedImage(wid + 2, hei + 2, type);
+			image.setRGB(1, 1, wid, hei, rgb, 0, wid);
+			BufferedImage sub = image.getSubimage(1, 1, wid, hei); // not a plain raster
+			BufferedImage copy = new BufferedImage(wid, hei, type);
+			copy.setRGB(0, 0, wid, hei, rgb, 0, wid);
+			for (int mode = 0; mode < 2; mode++) {
+				byte[] expected = Binarizer.binarize(PictureRaster.readRGB(copy), 128, mode == 1);
+				assertArrayEquals("Type " + type, expected, Binarizer.binarize(copy, 128, mode == 1));
+				assertArrayEquals("Type " + type, expected, Binarizer.binarize(sub, 128, mode == 1));
+				assertArrayEquals("Type " + type, expected, Binarizer.pack(copy, 128, mode == 1).toBytes());
+				assertArrayEquals("Type " + type, expected, Binarizer.pack(sub, 128, mode == 1).toBytes());
+			}
+			int[] histogram = OtsuThreshold.histogram(PictureRaster.readRGB(copy));
+			assertArrayEquals("Type " + type, histogram, OtsuThreshold.histogram(copy));
+			assertArrayEquals("Type " + type, histogram, OtsuThreshold.histogram(sub));
+		}
+	}
+
+	/**
+	 * Random opaque pixels, a few of them on the gray threshold
+	 *
+	 * @param n
+	 *            number of pixels
+	 * @return packed RGB values
+	 */
+	private int[] randomPixels(int n) {
+		int[] rgb = new int[n];
+		for (int i = 0; i < n; i++)
+			rgb[i] = random.nextInt(10) == 0 ? 0xFF808080 : 0xFF000000 | random.nextInt(1 << 24);
+		return rgb;
+	}
+}
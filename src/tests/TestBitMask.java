@@ -0,0 +1,146 @@
+package tests;
+
+import static org.junit.Assert.*;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import imageprocessing.BitMask;
+import imageprocessing.BlockLabeler;
+import imageprocessing.Connectivity;
+import imageprocessing.LabelStatistics;
+import imageprocessing.Labeler;
+import imageprocessing.ParallelLabeler;
+import imageprocessing.TwoPassLabeler;
+
+public class TestBitMask {
+
+	Random random;
+	int[] widths;
+
+	@Before
+	public void setUp() throws Exception {
+		random = new Random(14);
+		widths = new int[] { 1, 7, 63, 64, 65, 128, 130 };
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		random = null;
+		widths = null;
+	}
+
+	/**
+	 * C.O.R.R.E.C.T => Conformance / RIGHT B.I.C.E.P => B, I
+	 * Test if packing then unpacking gives the mask back, on widths around
+	 * the 64 bits of a word
+	 */
+	@Test
+	public void testPackUnpack() {
+		for (int wid : widths) {
+			byte[] mask = randomMask(wid, 5, 50);
+			BitMask bits = BitMask.pack(mask, wid, 5);
+			assertArrayEquals("Width " + wid, mask, bits.toBytes());
+			int count = 0;
+			for (int y = 0; y < 5; y++) {
+				for (int x = 0; x < wid; x++) {
+					assertEquals(mask[y * wid + x] == 1, bits.get(x, y));
+					count += mask[y * wid + x];
+				}
+			}
+			assertEquals(count, bits.cardinality());
+		}
+	}
+
+	/**
+	 * RIGHT B.I.C.E.P => Right, B
+	 * Test if the next foreground and background pixels are found from every
+	 * place of a row, the last pixel of a row and past it included
+	 */
+	@Test
+	public void testNextBits() {
+		for (int wid : widths) {
+			for (int density : new int[] { 0, 3, 50, 97, 100 }) {
+				byte[] mask = randomMask(wid, 1, density);
+				BitMask bits = BitMask.pack(mask, wid, 1);
+				for (int x = 0; x <= wid; x++) {
+					int set = x, clear = x;
+					while (set < wid && mask[set] == 0)
+						set++;
+					while (clear < wid && mask[clear] == 1)
+						clear++;
+					assertEquals("Width " + wid, set, bits.nextSetBit(0, x));
+					assertEquals("Width " + wid, clear, bits.nextClearBit(0, x));
+				}
+			}
+		}
+	}
+
+	/**
+	 * C.O.R.R.E.C.T => Cardinality
+	 * Test if the packed mask takes one bit per pixel, rounded up to a word
+	 * per row
+	 */
+	@Test
+	public void testSize() {
+		BitMask bits = new BitMask(1000, 10);
+		assertEquals(10 * 16 * 8, bits.sizeInBytes());
+		bits.set(999, 9, true);
+		assertTrue(bits.get(999, 9));
+		assertEquals(1, bits.cardinality());
+		bits.set(999, 9, false);
+		assertEquals(0, bits.cardinality());
+	}
+
+	/**
+	 * C.O.R.R.E.C.T => Conformance
+	 * Test if labeling the packed mask gives the same labels and statistics
+	 * as labeling the byte mask, with both connectivities and with every
+	 * labeler that reads the bits
+	 */
+	@Test
+	public void testLabelPackedMask() {
+		for (int wid : widths) {
+			int hei = 9;
+			byte[] mask = randomMask(wid, hei, 55);
+			BitMask bits = BitMask.pack(mask, wid, hei);
+			Labeler[] labelers = new Labeler[] { new TwoPassLabeler(Connectivity.FOUR),
+					new TwoPassLabeler(Connectivity.EIGHT), new BlockLabeler(),
+					new ParallelLabeler(ForkJoinPool.commonPool(), 2, Connectivity.FOUR),
+					new ParallelLabeler(ForkJoinPool.commonPool(), 2, Connectivity.EIGHT) };
+			for (Labeler labeler : labelers) {
+				assertTrue(labeler.readsBits());
+				int[] expected = new int[wid * hei];
+				int[] labels = new int[wid * hei];
+				LabelStatistics expectedStats = new LabelStatistics(2);
+				LabelStatistics stats = new LabelStatistics(2);
+				assertEquals(labeler.label(mask, wid, hei, expected, expectedStats),
+						labeler.label(bits, labels, stats));
+				assertArrayEquals(expected, labels);
+				assertArrayEquals(expectedStats.getLabels(), stats.getLabels());
+				for (int label : stats.getLabels())
+					assertArrayEquals(expectedStats.getLimits(label), stats.getLimits(label));
+			}
+		}
+	}
+
+	/**
+	 * Random byte mask
+	 *
+	 * @param wid
+	 * @param hei
+	 * @param density
+	 *            percentage of foreground pixels
+	 * @return row-major mask
+	 */
+	private byte[] randomMask(int wid, int hei, int density) {
+		byte[] mask = new byte[wid * hei];
+		for (int i = 0; i < mask.length; i++)
+			mask[i] = (byte) (random.nextInt(100) < density ? 1 : 0);
+		return mask;
+	}
+}
@@ -11,6 +11,7 @@ import org.junit.Before;
 import org.junit.Test;
 
 import imageprocessing.Component;
+import imageprocessing.LabelStatistics;
 
 public class TestComponent {
 
@@ -212,4 +213,161 @@ public class TestComponent {
 		c.merge(d);
 		assertEquals(c.getPixels().size(),6);
 	}
+
+	/**
+	 * C.O.R.R.E.C.T => cardinality
+	 * RIGHT B.I.C.E.P => Right, P
+	 * Test if pixels added in row order are kept as one run per row
+	 */
+	@Test
+	public void testAddPixelsInRowOrder() {
+		for (int x = 0; x < 10; x++) {
+			c.addPixel(x, 0);
+			c.addPixel(x, 1);
+		}
+		c.addPixel(20, 1);
+		assertEquals(c.getSize(),21);
+		assertEquals(c.getRunCount(),3);
+		assertEquals(c.getRunY(2),1);
+		assertEquals(c.getRunStart(2),20);
+		assertEquals(c.getRunEnd(2),20);
+	}
+
+	/**
+	 * C.O.R.R.E.C.T => cardinality, ordering
+	 * RIGHT B.I.C.E.P => Right, B
+	 * Test if overlapping runs are joined after merging
+	 */
+	@Test
+	public void testMergeOverlappingRuns() {
+		c.addRun(0, 0, 5);
+		c.addRun(2, 4, 4);
+		d.addRun(0, 3, 9);
+		d.addRun(1, 0, 0);
+		d.addRun(0, -1, 2);
+		c.merge(d);
+		assertEquals(c.getSize(),12);
+		assertEquals(c.getRunCount(),3);
+		assertEquals(c.getPixels().size(),12);
+
+		int[] limits = c.getLimits();
+		assertEquals("xMin",limits[0],0);
+		assertEquals("xMax",limits[1],9);
+		assertEquals("yMin",limits[2],0);
+		assertEquals("yMax",limits[3],2);
+	}
+
+	/**
+	 * C.O.R.R.E.C.T => ordering
+	 * RIGHT B.I.C.E.P => Right
+	 * Test if pixels are iterated row by row whatever the order they were added
+	 */
+	@Test
+	public void testIteratePixelsRowByRow() {
+		c.addPixel(5, 3);
+		c.addPixel(1, 0);
+		c.addPixel(2, 0);
+		c.addPixel(0, 3);
+		Iterator<Point> iter = c.iterator();
+		assertEquals(iter.next(),new Point(1,0));
+		assertEquals(iter.next(),new Point(2,0));
+		assertEquals(iter.next(),new Point(0,3));
+		assertEquals(iter.next(),new Point(5,3));
+		assertFalse(iter.hasNext());
+	}
+
+	/**
+	 * C.O.R.R.E.C.T => cardinality
+	 * RIGHT B.I.C.E.P => Right, C
+	 * Test if the statistics kept while adding pixels match the pixels
+	 */
+	@Test
+	public void testStatistics() {
+		for (int y = 2; y <= 4; y++)
+			c.addRun(y, 1, 3);
+		assertEquals(c.getSize(),9);
+		assertEquals(c.getCentroidX(),2.0,1e-9);
+		assertEquals(c.getCentroidY(),3.0,1e-9);
+		assertEquals(c.getVarianceX(),2.0 / 3,1e-9);
+		assertEquals(c.getVarianceY(),2.0 / 3,1e-9);
+		assertEquals(c.getCovarianceXY(),0.0,1e-9);
+	}
+
+	/**
+	 * C.O.R.R.E.C.T => cardinality
+	 * RIGHT B.I.C.E.P => Right, C
+	 * Test if the statistics stay exact when merged pixels overlap
+	 */
+	@Test
+	public void testStatisticsMergeDuplicate() {
+		c.addPixel(0, 0);
+		c.addPixel(2, 2);
+		d.addPixel(2, 2);
+		d.addPixel(1, 1);
+		c.merge(d);
+		c.addPixel(1, 1);
+		assertEquals(c.getSize(),3);
+		assertEquals(c.getCentroidX(),1.0,1e-9);
+		assertEquals(c.getCovarianceXY(),2.0 / 3,1e-9);
+
+		int[] limits = c.getLimits();
+		assertEquals("xMin",limits[0],0);
+		assertEquals("xMax",limits[1],2);
+		assertEquals("yMin",limits[2],0);
+		assertEquals("yMax",limits[3],2);
+	}
+
+	/**
+	 * C.O.R.R.E.C.T => Ordering / Range
+	 * RIGHT B.I.C.E.P => B
+	 * Test if runs beyond 2^21 rows or columns are still sorted and joined
+	 * in the right order, and if the moments of runs far from the origin do
+	 * not overflow
+	 */
+	@Test
+	public void testLargeCoordinates() {
+		int far = 1 << 22;
+		c.addRun(far, far + 5, far + 9);
+		c.addRun(3, 0, 1);
+		c.addRun(far, far + 7, far + 12);
+		c.addRun(far - 1, 2, 2);
+		assertEquals(c.getRunCount(),3);
+		assertEquals(c.getRunY(0),3);
+		assertEquals(c.getRunY(1),far - 1);
+		assertEquals(c.getRunY(2),far);
+		assertEquals(c.getRunStart(2),far + 5);
+		assertEquals(c.getRunEnd(2),far + 12);
+		assertEquals(c.getSize(),11);
+
+		// the same pixels one by one, centered before squaring
+		int[][] runs = new int[][] { { 3, 0, 1 }, { far - 1, 2, 2 }, { far, far + 5, far + 12 } };
+		double meanX = 0, meanY = 0, varX = 0, varY = 0;
+		for (int[] run : runs)
+			for (int x = run[1]; x <= run[2]; x++) {
+				meanX += x / 11.0;
+				meanY += run[0] / 11.0;
+			}
+		for (int[] run : runs)
+			for (int x = run[1]; x <= run[2]; x++) {
+				varX += (x - meanX) * (x - meanX) / 11;
+				varY += (run[0] - meanY) * (run[0] - meanY) / 11;
+			}
+		assertEquals(meanX, c.getCentroidX(), 1e-6);
+		assertEquals(meanY, c.getCentroidY(), 1e-6);
+		assertEquals(varX, c.getVarianceX(), 1e-6 * varX);
+		assertEquals(varY, c.getVarianceY(), 1e-6 * varY);
+
+		// six pixels around x = 30 million, whose squares summed from 0
+		// went past 2^63
+		int x = 30197353;
+		d.addRun(7, x, x + 5);
+		LabelStatistics stats = new LabelStatistics(2);
+		stats.reset(1);
+		stats.addRun(1, 7, x, x + 5);
+		assertEquals(x + 2.5, d.getCentroidX(), 1e-6);
+		assertEquals(35 / 12.0, d.getVarianceX(), 0.25);
+		assertEquals(x + 2.5, stats.getCentroidX(1), 1e-6);
+		assertEquals(35 / 12.0, stats.getVarianceX(1), 0.25);
+		assertEquals(0, stats.getCovarianceXY(1), 0.25);
+	}
 }
@@ -3,16 +3,36 @@ package tests;
 import static org.junit.Assert.*;
 import java.awt.Color;
 import java.awt.Point;
+import java.awt.image.BufferedImage;
 import java.io.File;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.TimeoutException;
+import javax.imageio.ImageIO;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.JUnitCore;
 import org.junit.runner.Result;
 import edu.princeton.cs.introcs.Picture;
+import imageprocessing.BitMask;
+import imageprocessing.BlockLabeler;
+import imageprocessing.Component;
 import imageprocessing.ConnectedComponentImage;
+import imageprocessing.Connectivity;
+import imageprocessing.FixedThreshold;
+import imageprocessing.LabelStatistics;
+import imageprocessing.Labeler;
+import imageprocessing.ParallelLabeler;
+import imageprocessing.RunLabeler;
+import imageprocessing.StreamingLabeler;
+import imageprocessing.TwoPassLabeler;
+import imageprocessing.TwoPassLabeler.ScanOrder;
+import imageprocessing.WeightedUnionFind;
 
 public class TestConnectedComponentImage {
 
@@ -60,6 +80,37 @@ public class TestConnectedComponentImage {
 		}
 	}
 
+	/**
+	 * Type: C.O.R.R.E.C.T => Conformance, Reference
+	 * Test if a processor made from an image already decoded finds the same
+	 * components as one made from the file, and if every picture it hands
+	 * out is a copy of its own
+	 */
+	@Test
+	public void testCreateFromDecodedImage() {
+		try {
+			String file = "images/crosses.gif";
+			BufferedImage image = ImageIO.read(new File(file));
+			for (int mode = 0; mode < 2; mode++) {
+				ConnectedComponentImage decoded = new ConnectedComponentImage(image,
+						new FixedThreshold(128, mode == 1), new TwoPassLabeler(), true);
+				ConnectedComponentImage read = new ConnectedComponentImage(file, mode);
+				assertEquals(read.countComponents(), decoded.countComponents());
+				assertEquals(pixelSets(read), pixelSets(decoded));
+				assertEquals(new Picture(file), decoded.getPicture());
+			}
+			ConnectedComponentImage processor = new ConnectedComponentImage(image, new FixedThreshold(128, true),
+					new TwoPassLabeler(), true);
+			Picture copy = processor.getPicture();
+			copy.set(0, 0, Color.RED);
+			assertNotEquals(copy, processor.getPicture());
+			assertEquals(new Picture(file), processor.getPicture());
+		} catch (Exception e) {
+			e.printStackTrace();
+			fail("Exception thrown");
+		}
+	}
+
 	/**
 	 * Type: C.O.R.R.E.C.T => Existance / RIGHT B.I.C.E.P => B 
 	 * Test if expected allowed-picture-file-extensions can be created
@@ -131,6 +182,45 @@ public class TestConnectedComponentImage {
 		}
 	}
 	
+	/**
+	 * RIGHT B.I.C.E.P => Right / C.O.R.R.E.C.T => Conformance
+	 * Test if the coloured picture paints the background black and every
+	 * component in one colour that is not black, with or without pixel sets
+	 */
+	@Test
+	public void testColourComponentImage() {
+		try {
+			for (String file : new String[] { "images/shapes.bmp", "images/crosses.gif" }) {
+				for (int mode = 0; mode < 2; mode++) {
+					for (boolean pixelSets : new boolean[] { true, false }) {
+						ConnectedComponentImage c = new ConnectedComponentImage(file, mode, new TwoPassLabeler(),
+								pixelSets);
+						Picture coloured = c.colourComponentImage();
+						Picture binarized = c.binaryComponentImage();
+						Color foreground = mode == 1 ? Color.black : Color.white;
+						for (int x = 0; x < coloured.width(); x++) {
+							for (int y = 0; y < coloured.height(); y++) {
+								boolean inComponent = binarized.get(x, y).equals(foreground);
+								assertEquals(inComponent, !coloured.get(x, y).equals(Color.black));
+							}
+						}
+						if (!pixelSets)
+							continue;
+						for (Component component : c.getSetComponents()) {
+							Point first = component.iterator().next();
+							Color colour = coloured.get(first.x, first.y);
+							for (Point p : component)
+								assertEquals(colour, coloured.get(p.x, p.y));
+						}
+					}
+				}
+			}
+		} catch (Exception e) {
+			e.printStackTrace();
+			fail("Exception thrown");
+		}
+	}
+
 	/**
 	 * RIGHT B.I.C.E.P => Right 
 	 * Test if the program scans and gives the expected component amount
@@ -276,4 +366,405 @@ public class TestConnectedComponentImage {
 			assertTrue("Not Time out exception", e instanceof TimeoutException);
 		}
 	}
+
+	/**
+	 * RIGHT B.I.C.E.P => Right, C
+	 * Test if the statistics-only mode finds the same components, areas,
+	 * limits and centroids as the components built from pixel sets
+	 */
+	@Test
+	public void testStatisticsOnlyMatchesComponents() {
+		for (int i = 0; i < names.length; i++) {
+			for (int mode = 0; mode < 2; mode++) {
+				try {
+					ConnectedComponentImage sets = new ConnectedComponentImage(pre + names[i] + ".bmp", mode);
+					ConnectedComponentImage stats = new ConnectedComponentImage(pre + names[i] + ".bmp", mode,
+							new TwoPassLabeler(), false);
+					LabelStatistics s = stats.getStatistics();
+					assertEquals("Error with case " + names[i], sets.countComponents(), stats.countComponents());
+					assertEquals("Error with case " + names[i], sets.countComponents(), s.getLabels().length);
+					assertEquals("Error with case " + names[i], 0, stats.getComponentsDB().size());
+
+					for (int label : s.getLabels()) {
+						Component c = sets.getComponentsDB().get(label);
+						assertEquals("Error with case " + names[i], c.getSize(), s.getArea(label));
+						assertArrayEquals("Error with case " + names[i], c.getLimits(), s.getLimits(label));
+						assertEquals("Error with case " + names[i], c.getCentroidX(), s.getCentroidX(label), 1e-9);
+						assertEquals("Error with case " + names[i], c.getCentroidY(), s.getCentroidY(label), 1e-9);
+					}
+					assertEquals("Error with case " + names[i], sets.highlightComponentImage(),
+							stats.highlightComponentImage());
+				} catch (Exception e) {
+					e.printStackTrace();
+					fail("Exception thrown with case name " + names[i]);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Test if the parallel labeler finds the same components as the two-pass
+	 * one on the test images, with strips of one row so every seam is used
+	 */
+	@Test
+	public void testParallelMatchesTwoPass() {
+		ForkJoinPool pool = new ForkJoinPool(4);
+		for (int i = 0; i < names.length; i++) {
+			for (int mode = 0; mode < 2; mode++) {
+				try {
+					ConnectedComponentImage serial = new ConnectedComponentImage(pre + names[i] + ".bmp", mode);
+					ConnectedComponentImage parallel = new ConnectedComponentImage(pre + names[i] + ".bmp", mode,
+							new ParallelLabeler(pool, 1));
+					assertEquals("Error with case " + names[i], serial.countComponents(), parallel.countComponents());
+					assertEquals("Error with case " + names[i], pixelSets(serial), pixelSets(parallel));
+				} catch (Exception e) {
+					e.printStackTrace();
+					fail("Exception thrown with case name " + names[i]);
+				}
+			}
+		}
+		pool.shutdown();
+	}
+
+	/**
+	 * Test if the parallel labeler gives the same partition as the two-pass
+	 * one on random masks, with all strip heights from one row upwards
+	 */
+	@Test
+	public void testParallelRandomMasks() {
+		ForkJoinPool pool = new ForkJoinPool(4);
+		Random random = new Random(8);
+		int wid = 37, hei = 53;
+		for (int round = 0; round < 20; round++) {
+			byte[] mask = new byte[wid * hei];
+			for (int id = 0; id < mask.length; id++)
+				mask[id] = (byte) (random.nextInt(100) < 45 + round ? 1 : 0);
+			int[] expected = new int[mask.length];
+			int count = new TwoPassLabeler().label(mask, wid, hei, expected);
+
+			for (int rows = 1; rows <= hei; rows *= 2) {
+				int[] labels = new int[mask.length];
+				assertEquals(count, new ParallelLabeler(pool, rows).label(mask, wid, hei, labels));
+				assertSamePartition(expected, labels);
+			}
+		}
+		pool.shutdown();
+	}
+
+	/**
+	 * Test if 8-connectivity joins the pixels that only touch by a corner:
+	 * the diagonal lines become one component each and the crosses of the
+	 * README are 8 instead of 9
+	 */
+	@Test
+	public void testEightConnectivity() {
+		String[] cases = new String[] { "oneDiagonalLine", "twoDiagonalLines", "onePixelsatPerCornerAndEdge" };
+		int[][] counts = new int[][] { { 1, 1 }, { 1, 1 }, { 1, 8 } };
+		try {
+			for (int i = 0; i < cases.length; i++) {
+				for (int mode = 0; mode < 2; mode++) {
+					ConnectedComponentImage image = new ConnectedComponentImage(pre + cases[i] + ".bmp", mode,
+							new TwoPassLabeler(Connectivity.EIGHT));
+					assertEquals("Error with case " + cases[i], counts[i][mode], image.countComponents());
+				}
+			}
+			assertEquals(9, new ConnectedComponentImage("images/crosses.gif", 0).countComponents());
+			assertEquals(8, new ConnectedComponentImage("images/crosses.gif", 0, new TwoPassLabeler(Connectivity.EIGHT))
+					.countComponents());
+		} catch (Exception e) {
+			e.printStackTrace();
+			fail("Exception thrown");
+		}
+	}
+
+	/**
+	 * Test the 8-connectivity labelers against a flood fill on random masks,
+	 * in both scan orders, in parallel strips and in 2x2 blocks
+	 */
+	@Test
+	public void testEightConnectivityRandomMasks() {
+		ForkJoinPool pool = new ForkJoinPool(4);
+		Random random = new Random(9);
+		for (int round = 0; round < 40; round++) {
+			int wid = round < 20 ? 41 : 1 + random.nextInt(8);
+			int hei = round < 20 ? 29 : 1 + random.nextInt(8);
+			byte[] mask = new byte[wid * hei];
+			for (int id = 0; id < mask.length; id++)
+				mask[id] = (byte) (random.nextInt(100) < 20 + 2 * (round % 20) ? 1 : 0);
+			int[] expected = new int[mask.length];
+			int count = floodFill8(mask, wid, hei, expected);
+
+			Labeler[] labelers = new Labeler[] { new TwoPassLabeler(Connectivity.EIGHT),
+					new TwoPassLabeler(ScanOrder.COLUMN_MAJOR, Connectivity.EIGHT, WeightedUnionFind::new),
+					new ParallelLabeler(pool, 1, Connectivity.EIGHT), new ParallelLabeler(pool, 4, Connectivity.EIGHT),
+					new BlockLabeler(), new RunLabeler(Connectivity.EIGHT) };
+			for (Labeler labeler : labelers) {
+				int[] labels = new int[mask.length];
+				assertEquals(count, labeler.label(mask, wid, hei, labels));
+				assertSamePartition(expected, labels);
+			}
+		}
+		pool.shutdown();
+	}
+
+	/**
+	 * Test if the block labeler makes fewer provisional labels and asks for
+	 * fewer unions than the pixel labeler on the dense sample images
+	 */
+	@Test
+	public void testBlockLabelerFewerLabelsAndUnions() {
+		String[] files = new String[] { "images/bacteria.bmp", "images/stars.jpg", "images/shapes.bmp" };
+		try {
+			for (String file : files) {
+				for (int mode = 0; mode < 2; mode++) {
+					TwoPassLabeler pixels = new TwoPassLabeler(Connectivity.EIGHT);
+					BlockLabeler blocks = new BlockLabeler();
+					int expected = new ConnectedComponentImage(file, mode, pixels).countComponents();
+					assertEquals("Error with " + file, expected,
+							new ConnectedComponentImage(file, mode, blocks).countComponents());
+					assertTrue("Error with " + file, blocks.getProvisionalLabels() <= pixels.getProvisionalLabels());
+					assertTrue("Error with " + file, blocks.getUnionCalls() <= pixels.getUnionCalls());
+				}
+			}
+		} catch (Exception e) {
+			e.printStackTrace();
+			fail("Exception thrown");
+		}
+	}
+
+	/**
+	 * C.O.R.R.E.C.T => Conformance / RIGHT B.I.C.E.P => C
+	 * Test if the run labeler gives the same partition and statistics as the
+	 * two-pass one on random masks, from a byte mask and from a packed one,
+	 * with both connectivities
+	 */
+	@Test
+	public void testRunLabelerRandomMasks() {
+		Random random = new Random(15);
+		for (int round = 0; round < 40; round++) {
+			int wid = round < 20 ? 67 : 1 + random.nextInt(8);
+			int hei = round < 20 ? 23 : 1 + random.nextInt(8);
+			byte[] mask = new byte[wid * hei];
+			for (int id = 0; id < mask.length; id++)
+				mask[id] = (byte) (random.nextInt(100) < 5 * (round % 20) ? 1 : 0);
+			BitMask bits = BitMask.pack(mask, wid, hei);
+			for (Connectivity connectivity : Connectivity.values()) {
+				int[] expected = new int[mask.length];
+				LabelStatistics expectedStats = new LabelStatistics(2);
+				int count = new TwoPassLabeler(connectivity).label(mask, wid, hei, expected, expectedStats);
+
+				RunLabeler runs = new RunLabeler(connectivity);
+				int[] labels = new int[mask.length];
+				assertEquals(count, runs.label(mask, wid, hei, labels));
+				assertSamePartition(expected, labels);
+
+				labels = new int[mask.length];
+				LabelStatistics stats = new LabelStatistics(2);
+				assertEquals(count, runs.label(bits, labels, stats));
+				assertSamePartition(expected, labels);
+				assertEquals(count, stats.getLabels().length);
+				for (int label : stats.getLabels()) {
+					int other = expected[firstPixel(labels, label)];
+					assertEquals(expectedStats.getArea(other), stats.getArea(label));
+					assertArrayEquals(expectedStats.getLimits(other), stats.getLimits(label));
+					assertEquals(expectedStats.getCentroidX(other), stats.getCentroidX(label), 1e-9);
+					assertEquals(expectedStats.getCentroidY(other), stats.getCentroidY(label), 1e-9);
+					assertEquals(expectedStats.getVarianceX(other), stats.getVarianceX(label), 1e-9);
+					assertEquals(expectedStats.getVarianceY(other), stats.getVarianceY(label), 1e-9);
+					assertEquals(expectedStats.getCovarianceXY(other), stats.getCovarianceXY(label), 1e-9);
+				}
+			}
+		}
+	}
+
+	/**
+	 * RIGHT B.I.C.E.P => P
+	 * Test if the run labeler finds the components of the sample images with
+	 * one provisional label per run at most, far fewer runs than foreground
+	 * pixels on the star field
+	 */
+	@Test
+	public void testRunLabelerImages() {
+		String[] files = new String[] { "images/stars.jpg", "images/bacteria.bmp", pre + "onePixelInMiddle.bmp" };
+		try {
+			for (String file : files) {
+				for (int mode = 0; mode < 2; mode++) {
+					RunLabeler runs = new RunLabeler();
+					int expected = new ConnectedComponentImage(file, mode).countComponents();
+					assertEquals("Error with " + file, expected,
+							new ConnectedComponentImage(file, mode, runs).countComponents());
+					assertTrue("Error with " + file, runs.getProvisionalLabels() <= runs.getRunCount());
+				}
+			}
+			RunLabeler runs = new RunLabeler();
+			LabelStatistics stars = new ConnectedComponentImage("images/stars.jpg", 0, runs, false).getStatistics();
+			int area = 0;
+			for (int label : stars.getLabels())
+				area += stars.getArea(label);
+			assertTrue(runs.getRunCount() < area);
+		} catch (Exception e) {
+			e.printStackTrace();
+			fail("Exception thrown");
+		}
+	}
+
+	/**
+	 * C.O.R.R.E.C.T => Range / RIGHT B.I.C.E.P => B
+	 * Test if every labeler numbers the components 1 to count, with the
+	 * statistics under the same labels, on masks from empty to full
+	 */
+	@Test
+	public void testLabelsAreCompact() {
+		ForkJoinPool pool = new ForkJoinPool(4);
+		Random random = new Random(16);
+		int wid = 45, hei = 31;
+		for (int density = 0; density <= 100; density += 10) {
+			byte[] mask = new byte[wid * hei];
+			for (int id = 0; id < mask.length; id++)
+				mask[id] = (byte) (random.nextInt(100) < density ? 1 : 0);
+			Labeler[] labelers = new Labeler[] { new TwoPassLabeler(), new TwoPassLabeler(ScanOrder.COLUMN_MAJOR),
+					new TwoPassLabeler(Connectivity.EIGHT), new ParallelLabeler(pool, 2), new BlockLabeler(),
+					new RunLabeler(), new RunLabeler(Connectivity.EIGHT) };
+			for (Labeler labeler : labelers) {
+				int[] labels = new int[mask.length];
+				LabelStatistics stats = new LabelStatistics(2);
+				int count = labeler.label(mask, wid, hei, labels, stats);
+				boolean[] seen = new boolean[count + 1];
+				for (int l : labels) {
+					assertTrue(l >= 0 && l <= count);
+					seen[l] = true;
+				}
+				for (int l = 1; l <= count; l++) {
+					assertTrue(seen[l]);
+					assertEquals(l, stats.getLabels()[l - 1]);
+				}
+				assertEquals(count, stats.getLabels().length);
+			}
+		}
+		pool.shutdown();
+	}
+
+	/**
+	 * RIGHT B.I.C.E.P => E
+	 * Test if every labeler stops with a CancellationException when its
+	 * thread is interrupted, and labels the same mask in full afterwards
+	 */
+	@Test
+	public void testLabelersStopWhenInterrupted() {
+		ForkJoinPool pool = new ForkJoinPool(2);
+		Random random = new Random(21);
+		int wid = 40, hei = 150;
+		byte[] mask = new byte[wid * hei];
+		for (int id = 0; id < mask.length; id++)
+			mask[id] = (byte) random.nextInt(2);
+		Labeler[] labelers = new Labeler[] { new TwoPassLabeler(), new TwoPassLabeler(ScanOrder.COLUMN_MAJOR),
+				new ParallelLabeler(pool, 2), new BlockLabeler(), new RunLabeler() };
+		for (Labeler labeler : labelers) {
+			int count = labeler.label(mask, wid, hei, new int[mask.length]);
+			Thread.currentThread().interrupt();
+			try {
+				labeler.label(mask, wid, hei, new int[mask.length]);
+				fail("Should have thrown an exception");
+			} catch (CancellationException e) {
+				assertTrue(Thread.interrupted());
+			}
+			assertEquals(count, labeler.label(mask, wid, hei, new int[mask.length]));
+		}
+		StreamingLabeler streaming = new StreamingLabeler(new FixedThreshold(128, true));
+		Thread.currentThread().interrupt();
+		try {
+			streaming.label(mask, wid, hei, null);
+			fail("Should have thrown an exception");
+		} catch (CancellationException e) {
+			assertTrue(Thread.interrupted());
+		}
+		assertEquals(new TwoPassLabeler().label(mask, wid, hei, new int[mask.length]),
+				streaming.label(mask, wid, hei, null));
+		pool.shutdown();
+	}
+
+	/**
+	 * Find the first pixel of a label
+	 *
+	 * @param labels
+	 * @param label
+	 * @return index of the pixel
+	 */
+	private static int firstPixel(int[] labels, int label) {
+		int id = 0;
+		while (labels[id] != label)
+			id++;
+		return id;
+	}
+
+	/**
+	 * Label a mask with 8-connectivity by flood filling, one component after
+	 * the other
+	 *
+	 * @param mask
+	 * @param wid
+	 * @param hei
+	 * @param labels
+	 * @return the number of components
+	 */
+	private static int floodFill8(byte[] mask, int wid, int hei, int[] labels) {
+		int count = 0;
+		int[] stack = new int[mask.length];
+		for (int seed = 0; seed < mask.length; seed++) {
+			if (mask[seed] == 0 || labels[seed] != 0)
+				continue;
+			labels[seed] = ++count;
+			int top = 0;
+			stack[top++] = seed;
+			while (top > 0) {
+				int id = stack[--top];
+				int x = id % wid, y = id / wid;
+				for (int dy = -1; dy <= 1; dy++) {
+					for (int dx = -1; dx <= 1; dx++) {
+						int nx = x + dx, ny = y + dy;
+						if (nx < 0 || ny < 0 || nx >= wid || ny >= hei)
+							continue;
+						int n = ny * wid + nx;
+						if (mask[n] != 0 && labels[n] == 0) {
+							labels[n] = count;
+							stack[top++] = n;
+						}
+					}
+				}
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Assert that two label arrays group the pixels the same way, whatever
+	 * the label values
+	 *
+	 * @param expected
+	 * @param labels
+	 */
+	private static void assertSamePartition(int[] expected, int[] labels) {
+		HashMap<Integer, Integer> forward = new HashMap<>();
+		HashMap<Integer, Integer> backward = new HashMap<>();
+		for (int id = 0; id < expected.length; id++) {
+			assertEquals(expected[id] == 0, labels[id] == 0);
+			forward.putIfAbsent(expected[id], labels[id]);
+			backward.putIfAbsent(labels[id], expected[id]);
+			assertEquals(forward.get(expected[id]).intValue(), labels[id]);
+			assertEquals(backward.get(labels[id]).intValue(), expected[id]);
+		}
+	}
+
+	/**
+	 * Collect the pixel sets of all components of an image
+	 *
+	 * @param image
+	 * @return set of pixel sets
+	 */
+	private static HashSet<HashSet<Point>> pixelSets(ConnectedComponentImage image) {
+		HashSet<HashSet<Point>> sets = new HashSet<>();
+		for (Component c : image.getComponentsDB().values())
+			sets.add(c.getPixels());
+		return sets;
+	}
 }
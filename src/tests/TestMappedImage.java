@@ -0,0 +1,235 @@
+package tests;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import imageprocessing.Binarizer;
+import imageprocessing.BitMask;
+import imageprocessing.FixedThreshold;
+import imageprocessing.MappedImage;
+import imageprocessing.StreamingLabeler;
+import imageprocessing.TwoPassLabeler;
+
+public class TestMappedImage {
+
+	static final int WID = 37, HEI = 23;
+
+	Random random;
+	File file;
+
+	@Before
+	public void setUp() throws Exception {
+		random = new Random(18);
+		file = File.createTempFile("mapped", ".pgm");
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		file.delete();
+		file = null;
+		random = null;
+	}
+
+	/**
+	 * C.O.R.R.E.C.T => Conformance / RIGHT B.I.C.E.P => C
+	 * Test if a PGM is binarized as the same gray pixels of a picture, with
+	 * a comment in the header and the gray on the threshold included
+	 */
+	@Test
+	public void testGrayMatchesBinarizer() {
+		try {
+			int[] levels = randomLevels(255);
+			write("P5\n# from the camera\n" + WID + " " + HEI + "\n255\n", samples(levels, 1));
+			MappedImage image = MappedImage.open(file);
+			assertEquals(WID, image.getWidth());
+			assertEquals(HEI, image.getHeight());
+			for (int mode = 0; mode < 2; mode++) {
+				byte[] expected = Binarizer.binarize(grays(levels, 255), 128, mode == 1);
+				assertArrayEquals(expected, image.binarize(0, HEI, 128, mode == 1));
+				assertArrayEquals(expected, image.binarize(128, mode == 1).toBytes());
+			}
+		} catch (IOException e) {
+			e.printStackTrace();
+			fail("Exception thrown");
+		}
+	}
+
+	/**
+	 * RIGHT B.I.C.E.P => Right, B
+	 * Test if 16-bit samples and a small maximum value are scaled to 8 bits
+	 */
+	@Test
+	public void testOtherDepths() {
+		try {
+			for (int maxval : new int[] { 15, 65535 }) {
+				int[] levels = randomLevels(maxval);
+				write("P5 " + WID + " " + HEI + " " + maxval + "\n", samples(levels, maxval > 255 ? 2 : 1));
+				byte[] expected = Binarizer.binarize(grays(levels, maxval), 100, true);
+				assertArrayEquals(expected, MappedImage.open(file).binarize(0, HEI, 100, true));
+			}
+		} catch (IOException e) {
+			e.printStackTrace();
+			fail("Exception thrown");
+		}
+	}
+
+	/**
+	 * RIGHT B.I.C.E.P => Right, I
+	 * Test if the set bits of a PBM are the dark pixels and the raw samples
+	 * are read as a headerless PGM
+	 */
+	@Test
+	public void testBitsAndRaw() {
+		try {
+			byte[] mask = new byte[WID * HEI];
+			ByteArrayOutputStream bits = new ByteArrayOutputStream();
+			for (int y = 0; y < HEI; y++) {
+				int b = 0;
+				for (int x = 0; x < WID; x++) {
+					mask[y * WID + x] = (byte) random.nextInt(2);
+					b |= mask[y * WID + x] << (7 - x % 8);
+					if (x % 8 == 7 || x == WID - 1) {
+						bits.write(b);
+						b = 0;
+					}
+				}
+			}
+			write("P4\n" + WID + " " + HEI + "\n", bits.toByteArray());
+			MappedImage image = MappedImage.open(file);
+			assertArrayEquals(mask, image.binarize(0, HEI, 128, true));
+			byte[] bright = image.binarize(0, HEI, 128, false);
+			for (int i = 0; i < mask.length; i++)
+				assertEquals(1, mask[i] + bright[i]);
+
+			int[] levels = randomLevels(255);
+			write("", samples(levels, 1));
+			assertArrayEquals(Binarizer.binarize(grays(levels, 255), 128, false),
+					MappedImage.openRaw(file, WID, HEI).binarize(0, HEI, 128, false));
+		} catch (IOException e) {
+			e.printStackTrace();
+			fail("Exception thrown");
+		}
+	}
+
+	/**
+	 * RIGHT B.I.C.E.P => E
+	 * Test if files that are not binary PGM or PBM, or are shorter than their
+	 * header says, are refused
+	 */
+	@Test
+	public void testBadFiles() {
+		String[] headers = new String[] { "P2\n3 3\n255\n", "P5\n3\n", "P5\n3 3\n255\n", "GIF89a" };
+		for (String header : headers) {
+			try {
+				write(header, new byte[3]);
+				MappedImage.open(file);
+				fail("Should have thrown an exception: " + header);
+			} catch (IOException e) {
+				// expected
+			}
+		}
+		try {
+			write("", new byte[10]);
+			MappedImage.openRaw(file, 4, 4);
+			fail("Should have thrown an exception");
+		} catch (IOException e) {
+			// expected
+		}
+	}
+
+	/**
+	 * C.O.R.R.E.C.T => Conformance
+	 * Test if a mapped image labeled whole and streamed row by row finds the
+	 * components of its binarized pixels
+	 */
+	@Test
+	public void testLabelMapped() {
+		try {
+			int[] levels = new int[WID * HEI];
+			for (int i = 0; i < levels.length; i++)
+				levels[i] = random.nextInt(100) < 40 ? 30 : 220;
+			write("P5\n" + WID + " " + HEI + "\n255\n", samples(levels, 1));
+			MappedImage image = MappedImage.open(file);
+			byte[] mask = Binarizer.binarize(grays(levels, 255), 128, true);
+			int expected = new TwoPassLabeler().label(mask, WID, HEI, new int[mask.length]);
+			BitMask bits = image.binarize(128, true);
+			assertEquals(expected, new TwoPassLabeler().label(bits, new int[mask.length]));
+			assertEquals(expected, new StreamingLabeler(new FixedThreshold(128, true)).label(image, null));
+		} catch (IOException e) {
+			e.printStackTrace();
+			fail("Exception thrown");
+		}
+	}
+
+	/**
+	 * Random gray samples, a few of them on the threshold 128
+	 *
+	 * @param maxval
+	 *            largest sample
+	 * @return the samples
+	 */
+	private int[] randomLevels(int maxval) {
+		int[] levels = new int[WID * HEI];
+		for (int i = 0; i < levels.length; i++)
+			levels[i] = maxval == 255 && random.nextInt(10) == 0 ? 128 : random.nextInt(maxval + 1);
+		return levels;
+	}
+
+	/**
+	 * Write samples as big-endian bytes
+	 *
+	 * @param levels
+	 * @param bytes
+	 *            bytes per sample
+	 * @return the bytes
+	 */
+	private static byte[] samples(int[] levels, int bytes) {
+		byte[] data = new byte[levels.length * bytes];
+		for (int i = 0; i < levels.length; i++) {
+			if (bytes == 2)
+				data[2 * i] = (byte) (levels[i] >> 8);
+			data[bytes * i + bytes - 1] = (byte) levels[i];
+		}
+		return data;
+	}
+
+	/**
+	 * Packed gray pixels of samples scaled to 8 bits
+	 *
+	 * @param levels
+	 * @param maxval
+	 * @return packed RGB values
+	 */
+	private static int[] grays(int[] levels, int maxval) {
+		int[] rgb = new int[levels.length];
+		for (int i = 0; i < levels.length; i++) {
+			int level = (levels[i] * 255 + maxval / 2) / maxval;
+			rgb[i] = 0xFF000000 | level << 16 | level << 8 | level;
+		}
+		return rgb;
+	}
+
+	/**
+	 * Write a header and data into the temporary file
+	 *
+	 * @param header
+	 * @param data
+	 * @throws IOException
+	 */
+	private void write(String header, byte[] data) throws IOException {
+		try (FileOutputStream out = new FileOutputStream(file)) {
+			out.write(header.getBytes(StandardCharsets.US_ASCII));
+			out.write(data);
+		}
+	}
+}
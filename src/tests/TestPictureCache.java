@@ -0,0 +1,166 @@
+package tests;
+
+import static org.junit.Assert.*;
+
+import java.awt.Color;
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import edu.princeton.cs.introcs.Picture;
+import imageprocessing.Connectivity;
+import imageprocessing.ConnectedComponentImage;
+import imageprocessing.PictureCache;
+import imageprocessing.TwoPassLabeler;
+
+public class TestPictureCache {
+
+	PictureCache cache;
+
+	@Before
+	public void setUp() throws Exception {
+		cache = new PictureCache(64L << 20);
+		PictureCache.setShared(cache);
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		PictureCache.setShared(null);
+		cache = null;
+	}
+
+	/**
+	 * C.O.R.R.E.C.T => Ordering
+	 * Test if the least recently used picture is dropped once the budget is
+	 * reached, a picture read counting as used
+	 */
+	@Test
+	public void testLeastRecentlyUsedGoesFirst() {
+		PictureCache small = new PictureCache(2 * 4 * 10 * 10);
+		Picture a = new Picture(10, 10), b = new Picture(10, 10), c = new Picture(10, 10);
+		a.set(1, 2, Color.RED);
+		c.set(3, 4, Color.BLUE);
+		small.put("a", a);
+		small.put("b", b);
+		assertEquals(a, small.get("a"));
+		small.put("c", c);
+		assertNull(small.get("b"));
+		assertEquals(a, small.get("a"));
+		assertEquals(c, small.get("c"));
+		assertEquals(2, small.size());
+		assertEquals(800, small.getBytes());
+	}
+
+	/**
+	 * RIGHT B.I.C.E.P => B / C.O.R.R.E.C.T => Cardinality
+	 * Test if a picture larger than the budget is not kept and a picture put
+	 * again under its key is counted once
+	 */
+	@Test
+	public void testBudget() {
+		PictureCache small = new PictureCache(400);
+		small.put("large", new Picture(10, 11));
+		assertNull(small.get("large"));
+		assertEquals(0, small.getBytes());
+		small.put("a", new Picture(5, 5));
+		small.put("a", new Picture(10, 10));
+		assertEquals(1, small.size());
+		assertEquals(400, small.getBytes());
+		small.clear();
+		assertEquals(0, small.size());
+		assertEquals(0, small.getBytes());
+	}
+
+	/**
+	 * C.O.R.R.E.C.T => Reference
+	 * Test if processors of the same file, mode and connectivity share the
+	 * pixels of their derived pictures, processors of another mode or
+	 * connectivity keep their own, and the random colours are not kept
+	 */
+	@Test
+	public void testProcessorsShareDerivedPictures() {
+		try {
+			ConnectedComponentImage first = new ConnectedComponentImage("images/crosses.gif", 0);
+			ConnectedComponentImage second = new ConnectedComponentImage("images/crosses.gif", 0,
+					new TwoPassLabeler(), false);
+			assertEquals(first.binaryComponentImage(), second.binaryComponentImage());
+			assertEquals(first.highlightComponentImage(), second.highlightComponentImage());
+			assertEquals(first.identifyComponentImage(), first.identifyComponentImage());
+			assertEquals(3, cache.size());
+			first.colourComponentImage();
+			assertEquals(3, cache.size());
+
+			ConnectedComponentImage dark = new ConnectedComponentImage("images/crosses.gif", 1);
+			dark.binaryComponentImage();
+			ConnectedComponentImage eight = new ConnectedComponentImage("images/crosses.gif", 0,
+					new TwoPassLabeler(Connectivity.EIGHT));
+			eight.highlightComponentImage();
+			assertEquals(5, cache.size());
+		} catch (Exception e) {
+			e.printStackTrace();
+			fail("Exception thrown");
+		}
+	}
+
+	/**
+	 * C.O.R.R.E.C.T => Reference
+	 * Test if each get hands out a picture of its own, so that showing or
+	 * drawing on one does not touch the next one. Picture.show() makes the
+	 * window of a picture once, so a shared picture could not be shown again
+	 * once closed; the tests run headless, so this checks the instances and
+	 * their pixels
+	 */
+	@Test
+	public void testGetsDoNotShareState() {
+		try {
+			ConnectedComponentImage c = new ConnectedComponentImage("images/crosses.gif", 0);
+			Picture once = c.highlightComponentImage();
+			Picture twice = c.highlightComponentImage();
+			assertNotSame(once, twice);
+			assertEquals(once, twice);
+			once.set(0, 0, Color.GREEN);
+			twice.set(0, 0, Color.MAGENTA);
+			Picture again = new ConnectedComponentImage("images/crosses.gif", 0).highlightComponentImage();
+			assertNotSame(twice, again);
+			assertNotEquals(Color.GREEN, again.get(0, 0));
+			assertNotEquals(Color.MAGENTA, again.get(0, 0));
+
+			Picture made = cache.get("made", () -> new Picture(3, 3));
+			made.set(1, 1, Color.RED);
+			assertNotEquals(Color.RED, cache.get("made").get(1, 1));
+		} catch (Exception e) {
+			e.printStackTrace();
+			fail("Exception thrown");
+		}
+	}
+
+	/**
+	 * C.O.R.R.E.C.T => Time
+	 * Test if the pictures of a file are made again once the file changed
+	 */
+	@Test
+	public void testModifiedFileIsNotServed() {
+		File copy = null;
+		try {
+			copy = File.createTempFile("cached", ".gif");
+			Files.copy(new File("images/crosses.gif").toPath(), copy.toPath(), StandardCopyOption.REPLACE_EXISTING);
+			Picture before = new ConnectedComponentImage(copy.getPath(), 0).binaryComponentImage();
+			new ConnectedComponentImage(copy.getPath(), 0).binaryComponentImage();
+			assertEquals(1, cache.size());
+			assertTrue(copy.setLastModified(copy.lastModified() + 10000));
+			Picture after = new ConnectedComponentImage(copy.getPath(), 0).binaryComponentImage();
+			assertEquals(2, cache.size());
+			assertEquals(before, after);
+		} catch (Exception e) {
+			e.printStackTrace();
+			fail("Exception thrown");
+		} finally {
+			if (copy != null)
+				copy.delete();
+		}
+	}
+}
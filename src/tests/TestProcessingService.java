@@ -0,0 +1,314 @@
+package tests;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import imageprocessing.Cancellation;
+import imageprocessing.ConnectedComponentImage;
+import imageprocessing.ProcessingService;
+import imageprocessing.ProcessingTimeoutException;
+import imageprocessing.TwoPassLabeler;
+
+public class TestProcessingService {
+
+	ProcessingService service;
+
+	@Before
+	public void setUp() throws Exception {
+		service = new ProcessingService(2, 2, false);
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		service.close();
+		service = null;
+	}
+
+	/**
+	 * C.O.R.R.E.C.T => Conformance
+	 * Test if a batch of images processed on the pool gives the same counts
+	 * as images set up one by one
+	 */
+	@Test
+	public void testBatch() {
+		String[] files = new String[] { "images/crosses.gif", "images/bacteria.bmp", "images/shapes.bmp" };
+		try {
+			ArrayList<CompletableFuture<ConnectedComponentImage>> futures = new ArrayList<>();
+			for (int round = 0; round < 4; round++) {
+				for (String file : files) {
+					for (int mode = 0; mode < 2; mode++)
+						futures.add(service.submit(new ConnectedComponentImage(file, mode)));
+				}
+			}
+			int i = 0;
+			for (int round = 0; round < 4; round++) {
+				for (String file : files) {
+					for (int mode = 0; mode < 2; mode++) {
+						ConnectedComponentImage expected = new ConnectedComponentImage(file, mode);
+						expected.setup(service);
+						assertEquals(expected.countComponents(), futures.get(i++).get().countComponents());
+					}
+				}
+			}
+		} catch (Exception e) {
+			e.printStackTrace();
+			fail("Exception thrown");
+		}
+	}
+
+	/**
+	 * C.O.R.R.E.C.T => Cardinality
+	 * Test if no more jobs than the pool holds run at once, and if submit
+	 * blocks once the pool and the queue are full
+	 */
+	@Test
+	public void testBackpressure() {
+		try {
+			CountDownLatch release = new CountDownLatch(1);
+			AtomicInteger runningNow = new AtomicInteger();
+			AtomicInteger mostAtOnce = new AtomicInteger();
+			for (int i = 0; i < 4; i++) {
+				service.submit(() -> {
+					mostAtOnce.accumulateAndGet(runningNow.incrementAndGet(), Math::max);
+					release.await();
+					runningNow.decrementAndGet();
+					return null;
+				}, 10, TimeUnit.SECONDS);
+			}
+
+			AtomicBoolean fifthSubmitted = new AtomicBoolean();
+			Thread producer = new Thread(() -> {
+				try {
+					service.submit(() -> null, 10, TimeUnit.SECONDS).get();
+					fifthSubmitted.set(true);
+				} catch (Exception e) {
+					e.printStackTrace();
+				}
+			});
+			producer.start();
+			Thread.sleep(200);
+			assertFalse(fifthSubmitted.get());
+			assertEquals(2, mostAtOnce.get());
+
+			release.countDown();
+			producer.join(5000);
+			assertTrue(fifthSubmitted.get());
+			assertEquals(2, mostAtOnce.get());
+		} catch (InterruptedException e) {
+			fail("Interrupted");
+		}
+	}
+
+	/**
+	 * Type: C.O.R.R.E.C.T => Time / RIGHT B.I.C.E.P => E
+	 * Test if a job over its own timeout fails with a TimeoutException, is
+	 * interrupted and frees its thread for the next jobs
+	 */
+	@Test
+	public void testTimeout() {
+		try {
+			AtomicBoolean interrupted = new AtomicBoolean();
+			CompletableFuture<Object> slow = service.submit(() -> {
+				try {
+					Thread.sleep(10000);
+				} catch (InterruptedException e) {
+					interrupted.set(true);
+				}
+				return null;
+			}, 100, TimeUnit.MILLISECONDS);
+			try {
+				slow.get(5, TimeUnit.SECONDS);
+				fail("Should have thrown an exception");
+			} catch (ExecutionException e) {
+				assertTrue(e.getCause() instanceof TimeoutException);
+			}
+
+			for (int i = 0; i < 5; i++) {
+				int n = i;
+				assertEquals(n, (int) service.submit(() -> n, 1, TimeUnit.SECONDS).get());
+			}
+			Thread.sleep(100);
+			assertTrue(interrupted.get());
+		} catch (Exception e) {
+			e.printStackTrace();
+			fail("Exception thrown");
+		}
+	}
+
+	/**
+	 * Type: C.O.R.R.E.C.T => Time
+	 * Test if setup() throws the TimeoutException of its own timeout, and if
+	 * the processor can be set up again once given more time
+	 */
+	@Test
+	public void testSetupTimeout() {
+		ConnectedComponentImage c = null;
+		try {
+			c = new ConnectedComponentImage("images/stars.jpg", 0);
+			c.setTimeout(0, TimeUnit.MILLISECONDS);
+			c.setup(service);
+			fail("Should have thrown an exception");
+		} catch (Exception e) {
+			assertTrue("Not Time out exception", e instanceof TimeoutException);
+		}
+		try {
+			c.setTimeout(20, TimeUnit.SECONDS);
+			assertEquals(new ConnectedComponentImage("images/stars.jpg", 0).countComponents(), c.countComponents());
+		} catch (Exception e) {
+			e.printStackTrace();
+			fail("Exception thrown");
+		}
+	}
+
+	/**
+	 * Type: C.O.R.R.E.C.T => Time / RIGHT B.I.C.E.P => E
+	 * Test if a labeling over its timeout stops at a checkpoint and fails
+	 * with how many rows it had done
+	 */
+	@Test
+	public void testTimeoutReportsProgress() {
+		int wid = 50, hei = 10 * Cancellation.ROWS;
+		byte[] mask = new byte[wid * hei];
+		for (int id = 0; id < mask.length; id += 3)
+			mask[id] = 1;
+		try {
+			CompletableFuture<Object> endless = service.submit(() -> {
+				TwoPassLabeler labeler = new TwoPassLabeler();
+				int[] labels = new int[mask.length];
+				while (true)
+					labeler.label(mask, wid, hei, labels);
+			}, 100, TimeUnit.MILLISECONDS);
+			try {
+				endless.get(5, TimeUnit.SECONDS);
+				fail("Should have thrown an exception");
+			} catch (ExecutionException e) {
+				assertTrue(e.getCause() instanceof ProcessingTimeoutException);
+				ProcessingTimeoutException timeout = (ProcessingTimeoutException) e.getCause();
+				assertEquals(hei, timeout.getRows());
+				assertTrue(timeout.getRowsDone() >= 0 && timeout.getRowsDone() < hei);
+				assertEquals(0, timeout.getRowsDone() % Cancellation.ROWS);
+				assertTrue(timeout.getElapsedMillis() >= 100);
+			}
+			// both threads are free again once the labeling stopped
+			CountDownLatch both = new CountDownLatch(2);
+			for (int i = 0; i < 2; i++) {
+				service.submit(() -> {
+					both.countDown();
+					return both.await(5, TimeUnit.SECONDS);
+				}, 10, TimeUnit.SECONDS);
+			}
+			assertTrue(both.await(5, TimeUnit.SECONDS));
+		} catch (Exception e) {
+			e.printStackTrace();
+			fail("Exception thrown");
+		}
+	}
+
+	/**
+	 * C.O.R.R.E.C.T => Reference
+	 * Test if a job that sets up another processor on the same service runs
+	 * it on its own thread, even when no other thread is free
+	 */
+	@Test
+	public void testSetupFromJob() {
+		try (ProcessingService single = new ProcessingService(1, 0, false)) {
+			assertFalse(single.isWorkerThread());
+			CompletableFuture<Integer> outer = single.submit(() -> {
+				assertTrue(single.isWorkerThread());
+				ConnectedComponentImage inner = new ConnectedComponentImage("images/crosses.gif", 0);
+				inner.setup(single);
+				return inner.countComponents();
+			}, 10, TimeUnit.SECONDS);
+			assertEquals(9, (int) outer.get(5, TimeUnit.SECONDS));
+		} catch (Exception e) {
+			e.printStackTrace();
+			fail("Exception thrown");
+		}
+	}
+
+	/**
+	 * C.O.R.R.E.C.T => Conformance
+	 * Test if processors that share one labeler and run together find the
+	 * same components as processors with a labeler each
+	 */
+	@Test
+	public void testSharedLabeler() {
+		String[] files = new String[] { "images/crosses.gif", "images/bacteria.bmp", "images/shapes.bmp" };
+		try {
+			TwoPassLabeler shared = new TwoPassLabeler();
+			ArrayList<CompletableFuture<ConnectedComponentImage>> futures = new ArrayList<>();
+			for (int round = 0; round < 3; round++) {
+				for (String file : files)
+					futures.add(service.submit(new ConnectedComponentImage(file, 0, shared, true)));
+			}
+			int i = 0;
+			for (int round = 0; round < 3; round++) {
+				for (String file : files) {
+					ConnectedComponentImage expected = new ConnectedComponentImage(file, 0, new TwoPassLabeler(), true);
+					ConnectedComponentImage found = futures.get(i++).get();
+					assertEquals(expected.countComponents(), found.countComponents());
+					assertEquals(expected.getComponentsDB().keySet(), found.getComponentsDB().keySet());
+				}
+			}
+		} catch (Exception e) {
+			e.printStackTrace();
+			fail("Exception thrown");
+		}
+	}
+
+	/**
+	 * RIGHT B.I.C.E.P => E
+	 * Test if virtual threads are used when the JVM has them and the platform
+	 * pool otherwise, and if a closed service takes no more jobs
+	 */
+	@Test
+	public void testVirtualThreadsAndClose() {
+		try {
+			boolean hasVirtual;
+			try {
+				Thread.class.getMethod("ofVirtual");
+				hasVirtual = true;
+			} catch (NoSuchMethodException e) {
+				hasVirtual = false;
+			}
+			ProcessingService virtual = new ProcessingService(3, 0, true);
+			assertEquals(hasVirtual, virtual.isVirtual());
+			ConnectedComponentImage c = new ConnectedComponentImage("images/crosses.gif", 0);
+			assertEquals(9, virtual.submit(c).get().countComponents());
+			virtual.close();
+			try {
+				virtual.submit(() -> null, 1, TimeUnit.SECONDS);
+				fail("Should have thrown an exception");
+			} catch (RuntimeException e) {
+				assertTrue(true);
+			}
+
+			// a job still waiting for a thread when the service is closed runs
+			ProcessingService single = new ProcessingService(1, 1, false);
+			CountDownLatch release = new CountDownLatch(1);
+			CompletableFuture<Boolean> first = single.submit(() -> release.await(5, TimeUnit.SECONDS), 5,
+					TimeUnit.SECONDS);
+			CompletableFuture<ConnectedComponentImage> queued = single
+					.submit(new ConnectedComponentImage("images/crosses.gif", 0), 5, TimeUnit.SECONDS);
+			single.close();
+			release.countDown();
+			assertTrue(first.get());
+			assertEquals(9, queued.get().countComponents());
+		} catch (Exception e) {
+			e.printStackTrace();
+			fail("Exception thrown");
+		}
+	}
+}
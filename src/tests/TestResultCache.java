@@ -0,0 +1,274 @@
+package tests;
+
+import static org.junit.Assert.*;
+
+import java.awt.image.BufferedImage;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.DeflaterOutputStream;
+
+import javax.imageio.ImageIO;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import imageprocessing.BitMask;
+import imageprocessing.Component;
+import imageprocessing.ConnectedComponentImage;
+import imageprocessing.Connectivity;
+import imageprocessing.FixedThreshold;
+import imageprocessing.LabelStatistics;
+import imageprocessing.ResultCache;
+import imageprocessing.TwoPassLabeler;
+
+public class TestResultCache {
+
+	File directory;
+	ResultCache cache;
+
+	@Before
+	public void setUp() throws Exception {
+		directory = File.createTempFile("results", "");
+		directory.delete();
+		cache = new ResultCache(directory, ResultCache.DEFAULT_BUDGET_BYTES);
+		ResultCache.setShared(cache);
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		ResultCache.setShared(null);
+		cache.clear();
+		directory.delete();
+		cache = null;
+	}
+
+	/**
+	 * C.O.R.R.E.C.T => Conformance
+	 * Test if a processor of pixels scanned before takes the result from the
+	 * cache without scanning, with the same components and statistics as a
+	 * scan, in both modes of storage
+	 */
+	@Test
+	public void testSecondProcessorSkipsScan() {
+		try {
+			AtomicInteger scans = new AtomicInteger();
+			ConnectedComponentImage first = new ConnectedComponentImage("images/shapes.bmp", 0, counting(scans), true);
+			int count = first.countComponents();
+			HashMap<Integer, Component> expected = first.getComponentsDB();
+			assertEquals(1, scans.get());
+			assertEquals(1, cache.size());
+
+			ConnectedComponentImage second = new ConnectedComponentImage("images/shapes.bmp", 0, counting(scans), true);
+			assertEquals(count, second.countComponents());
+			HashMap<Integer, Component> found = second.getComponentsDB();
+			assertEquals(1, scans.get());
+			assertEquals(expected.keySet(), found.keySet());
+			for (int label : expected.keySet()) {
+				assertEquals(expected.get(label).getSize(), found.get(label).getSize());
+				assertArrayEquals(expected.get(label).getLimits(), found.get(label).getLimits());
+			}
+
+			// statistics worked out from the labels of the pixel sets
+			ConnectedComponentImage stats = new ConnectedComponentImage("images/shapes.bmp", 0, counting(scans), false);
+			LabelStatistics cached = stats.getStatistics();
+			assertEquals(1, scans.get());
+			ResultCache.setShared(null);
+			LabelStatistics scanned = new ConnectedComponentImage("images/shapes.bmp", 0, new TwoPassLabeler(), false)
+					.getStatistics();
+			assertEquals(scanned.count(), cached.count());
+			for (int label : scanned.getLabels()) {
+				assertEquals(scanned.getArea(label), cached.getArea(label));
+				assertArrayEquals(scanned.getLimits(label), cached.getLimits(label));
+				assertEquals(scanned.getCovarianceXY(label), cached.getCovarianceXY(label), 1e-9);
+			}
+		} catch (Exception e) {
+			e.printStackTrace();
+			fail("Exception thrown");
+		}
+	}
+
+	/**
+	 * RIGHT B.I.C.E.P => Right, C
+	 * Test if the key follows the pixels, the mode and the connectivity, and
+	 * not the file the pixels came from
+	 */
+	@Test
+	public void testKey() {
+		try {
+			BufferedImage image = ImageIO.read(new File("images/crosses.gif"));
+			BufferedImage copy = new BufferedImage(image.getWidth(), image.getHeight(), BufferedImage.TYPE_INT_ARGB);
+			copy.getGraphics().drawImage(image, 0, 0, null);
+			FixedThreshold dark = new FixedThreshold(128, true);
+			String key = ResultCache.key(image, dark, Connectivity.FOUR);
+			assertEquals(64, key.length());
+			assertEquals(key, ResultCache.key(copy, new FixedThreshold(128, true), Connectivity.FOUR));
+			assertNotEquals(key, ResultCache.key(image, new FixedThreshold(128, false), Connectivity.FOUR));
+			assertNotEquals(key, ResultCache.key(image, new FixedThreshold(100, true), Connectivity.FOUR));
+			assertNotEquals(key, ResultCache.key(image, dark, Connectivity.EIGHT));
+			copy.setRGB(0, 0, ~copy.getRGB(0, 0));
+			assertNotEquals(key, ResultCache.key(copy, dark, Connectivity.FOUR));
+		} catch (IOException e) {
+			e.printStackTrace();
+			fail("Exception thrown");
+		}
+	}
+
+	/**
+	 * C.O.R.R.E.C.T => Ordering / RIGHT B.I.C.E.P => B
+	 * Test if the least recently used result is deleted once the budget is
+	 * reached, a result read counting as used
+	 */
+	@Test
+	public void testLeastRecentlyUsedGoesFirst() {
+		try {
+			int[] labels = new int[] { 1, 1, 0, 2, 0, 2 };
+			cache.store("a", 3, 2, 2, labels, null);
+			long bytes = cache.getBytes();
+			cache.clear();
+
+			ResultCache small = new ResultCache(directory, 2 * bytes + bytes / 2);
+			small.store("a", 3, 2, 2, labels, null);
+			small.store("b", 3, 2, 2, labels, null);
+			long now = System.currentTimeMillis();
+			new File(directory, "a.ccl").setLastModified(now - 20000);
+			new File(directory, "b.ccl").setLastModified(now - 10000);
+			assertNotNull(small.load("a", 3, 2));
+			small.store("c", 3, 2, 2, labels, null);
+			assertEquals(2, small.size());
+			assertNull(small.load("b", 3, 2));
+			ResultCache.Result a = small.load("a", 3, 2);
+			assertArrayEquals(labels, a.getLabels());
+			assertEquals(2, a.getCount());
+			assertEquals(2, a.getStatistics().getArea(2));
+			assertNotNull(small.load("c", 3, 2));
+			assertTrue(small.getBytes() <= small.getBudgetBytes());
+		} catch (IOException e) {
+			e.printStackTrace();
+			fail("Exception thrown");
+		}
+	}
+
+	/**
+	 * RIGHT B.I.C.E.P => E
+	 * Test if a damaged result, one with a negative label, one with more
+	 * components than pixels or one of another size counts as missing, and if a processor then scans again and finds
+	 * the right components
+	 */
+	@Test
+	public void testDamagedResultIsMissing() {
+		try {
+			int[] labels = new int[] { 1, 0, 1, 0 };
+			cache.store("a", 2, 2, 1, labels, null);
+			assertNull(cache.load("a", 4, 1));
+			assertEquals(0, cache.size());
+
+			int count = new ConnectedComponentImage("images/crosses.gif", 0).countComponents();
+			File[] files = directory.listFiles();
+			assertEquals(1, files.length);
+			try (FileOutputStream out = new FileOutputStream(files[0])) {
+				out.write(new byte[] { 1, 2, 3 });
+			}
+			AtomicInteger scans = new AtomicInteger();
+			assertEquals(count,
+					new ConnectedComponentImage("images/crosses.gif", 0, counting(scans), true).countComponents());
+			assertEquals(1, scans.get());
+			assertEquals(1, cache.size());
+
+			// a whole result whose first pixel has label -1
+			File result = files[0];
+			BufferedImage image = ImageIO.read(new File("images/crosses.gif"));
+			writeResult(result, image.getWidth(), image.getHeight(), count, -1);
+			assertEquals(count,
+					new ConnectedComponentImage("images/crosses.gif", 0, counting(scans), true).countComponents());
+			assertEquals(2, scans.get());
+			assertEquals(1, cache.size());
+			assertTrue(result.isFile());
+
+			// a whole result with more components than the heap holds
+			writeResult(result, image.getWidth(), image.getHeight(), Integer.MAX_VALUE, 0);
+			assertEquals(count,
+					new ConnectedComponentImage("images/crosses.gif", 0, counting(scans), true).countComponents());
+			assertEquals(3, scans.get());
+			assertEquals(1, cache.size());
+		} catch (Exception e) {
+			e.printStackTrace();
+			fail("Exception thrown");
+		}
+	}
+
+	/**
+	 * Write a result as the cache does: the first pixel has a given label,
+	 * the others are background and the components have no pixel
+	 *
+	 * @param result
+	 *            the file
+	 * @param wid
+	 * @param hei
+	 * @param count
+	 *            number of components
+	 * @param first
+	 *            label of the first pixel
+	 * @throws IOException
+	 */
+	private static void writeResult(File result, int wid, int hei, int count, int first) throws IOException {
+		try (DataOutputStream out = new DataOutputStream(new DeflaterOutputStream(new FileOutputStream(result)))) {
+			out.writeInt(0x43434C31);
+			out.writeInt(wid);
+			out.writeInt(hei);
+			out.writeInt(count);
+			writeVarInt(out, first);
+			writeVarInt(out, 1);
+			writeVarInt(out, 0);
+			writeVarInt(out, wid - 1);
+			for (int y = 1; y < hei; y++) {
+				writeVarInt(out, 0);
+				writeVarInt(out, wid);
+			}
+			for (int label = 1; label <= Math.min(count, wid * hei); label++)
+				out.writeInt(0);
+		}
+	}
+
+	/**
+	 * Write a number as the cache does, 7 bits a byte, the lowest first
+	 *
+	 * @param out
+	 * @param value
+	 * @throws IOException
+	 */
+	private static void writeVarInt(DataOutputStream out, int value) throws IOException {
+		while ((value & ~0x7F) != 0) {
+			out.write(value & 0x7F | 0x80);
+			value >>>= 7;
+		}
+		out.write(value);
+	}
+
+	/**
+	 * A two-pass labeler that counts its scans
+	 *
+	 * @param scans
+	 *            the counter
+	 * @return the labeler
+	 */
+	private static TwoPassLabeler counting(AtomicInteger scans) {
+		return new TwoPassLabeler() {
+			@Override
+			public int label(BitMask mask, int[] labels) {
+				scans.incrementAndGet();
+				return super.label(mask, labels);
+			}
+
+			@Override
+			public int label(BitMask mask, int[] labels, LabelStatistics stats) {
+				scans.incrementAndGet();
+				return super.label(mask, labels, stats);
+			}
+		};
+	}
+}
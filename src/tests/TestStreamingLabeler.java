@@ -0,0 +1,199 @@
+package tests;
+
+import static org.junit.Assert.*;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Random;
+
+import javax.imageio.ImageIO;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import imageprocessing.Binarizer;
+import imageprocessing.Connectivity;
+import imageprocessing.FixedThreshold;
+import imageprocessing.LabelStatistics;
+import imageprocessing.StreamingLabeler;
+import imageprocessing.TwoPassLabeler;
+
+public class TestStreamingLabeler {
+
+	Random random;
+	ArrayList<String> finished;
+	ArrayList<Integer> lastRows;
+	StreamingLabeler.Listener listener;
+
+	@Before
+	public void setUp() throws Exception {
+		random = new Random(17);
+		finished = new ArrayList<>();
+		lastRows = new ArrayList<>();
+		listener = (stats, label) -> {
+			finished.add(describe(stats, label));
+			lastRows.add(stats.getLimits(label)[3]);
+		};
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		random = null;
+		finished = null;
+		lastRows = null;
+		listener = null;
+	}
+
+	/**
+	 * C.O.R.R.E.C.T => Conformance
+	 * Test if the components streamed from random masks have the same
+	 * statistics as the ones of the two-pass labeler, with both
+	 * connectivities
+	 */
+	@Test
+	public void testMatchesTwoPass() {
+		for (int round = 0; round < 30; round++) {
+			int wid = round < 15 ? 53 : 1 + random.nextInt(8);
+			int hei = round < 15 ? 41 : 1 + random.nextInt(8);
+			byte[] mask = randomMask(wid, hei, 7 * (round % 15));
+			for (Connectivity connectivity : Connectivity.values()) {
+				finished.clear();
+				StreamingLabeler streaming = new StreamingLabeler(new FixedThreshold(128, true), connectivity, 16, 1);
+				int count = streaming.label(mask, wid, hei, listener);
+				assertEquals(expected(mask, wid, hei, connectivity), sorted(finished));
+				assertEquals(finished.size(), count);
+				assertTrue(streaming.getPeakLive() <= (wid + 1) / 2);
+			}
+		}
+	}
+
+	/**
+	 * RIGHT B.I.C.E.P => Right
+	 * Test if a component is handed over as soon as the row after its last
+	 * row is labeled, so they come in the order of their last row
+	 */
+	@Test
+	public void testFinishedInOrder() {
+		int wid = 40, hei = 60;
+		byte[] mask = randomMask(wid, hei, 40);
+		new StreamingLabeler(new FixedThreshold(128, true)).label(mask, wid, hei, listener);
+		ArrayList<Integer> inOrder = new ArrayList<>(lastRows);
+		Collections.sort(inOrder);
+		assertEquals(inOrder, lastRows);
+	}
+
+	/**
+	 * C.O.R.R.E.C.T => Conformance / RIGHT B.I.C.E.P => B
+	 * Test if reading a file in bands of a few rows, a band that stops
+	 * inside a component included, gives the components of the whole
+	 * picture, in both modes
+	 */
+	@Test
+	public void testFileInBands() {
+		try {
+			File file = new File("images/bacteria.bmp");
+			BufferedImage image = ImageIO.read(file);
+			int wid = image.getWidth(), hei = image.getHeight();
+			for (int mode = 0; mode < 2; mode++) {
+				byte[] mask = Binarizer.binarize(image, 128, mode == 1);
+				for (int bandRows : new int[] { 1, 7, hei }) {
+					finished.clear();
+					int count = new StreamingLabeler(new FixedThreshold(128, mode == 1), Connectivity.FOUR, bandRows,
+							1).label(file, listener);
+					assertEquals(expected(mask, wid, hei, Connectivity.FOUR), sorted(finished));
+					assertEquals(finished.size(), count);
+				}
+			}
+		} catch (Exception e) {
+			e.printStackTrace();
+			fail("Exception thrown");
+		}
+	}
+
+	/**
+	 * RIGHT B.I.C.E.P => Right
+	 * Test if subsampling labels every n-th pixel of every n-th row
+	 */
+	@Test
+	public void testSubsampling() {
+		try {
+			File file = new File("images/bacteria.bmp");
+			BufferedImage image = ImageIO.read(file);
+			int wid = image.getWidth(), hei = image.getHeight();
+			byte[] mask = Binarizer.binarize(image, 128, false);
+			int sw = (wid + 1) / 2, sh = (hei + 1) / 2;
+			byte[] sub = new byte[sw * sh];
+			for (int y = 0; y < sh; y++) {
+				for (int x = 0; x < sw; x++)
+					sub[y * sw + x] = mask[2 * y * wid + 2 * x];
+			}
+			new StreamingLabeler(new FixedThreshold(128, false), Connectivity.FOUR, 5, 2).label(file, listener);
+			assertEquals(expected(sub, sw, sh, Connectivity.FOUR), sorted(finished));
+		} catch (Exception e) {
+			e.printStackTrace();
+			fail("Exception thrown");
+		}
+	}
+
+	/**
+	 * The components of a mask labeled by the two-pass labeler
+	 *
+	 * @param mask
+	 * @param wid
+	 * @param hei
+	 * @param connectivity
+	 * @return sorted descriptions of the components
+	 */
+	private static ArrayList<String> expected(byte[] mask, int wid, int hei, Connectivity connectivity) {
+		LabelStatistics stats = new LabelStatistics(2);
+		new TwoPassLabeler(connectivity).label(mask, wid, hei, new int[wid * hei], stats);
+		ArrayList<String> components = new ArrayList<>();
+		for (int label : stats.getLabels())
+			components.add(describe(stats, label));
+		return sorted(components);
+	}
+
+	/**
+	 * Describe a component by its area, limits and centroid
+	 *
+	 * @param stats
+	 * @param label
+	 * @return the description
+	 */
+	private static String describe(LabelStatistics stats, int label) {
+		return stats.getArea(label) + " " + Arrays.toString(stats.getLimits(label)) + " "
+				+ Math.round(stats.getCentroidX(label) * 1e6) + " " + Math.round(stats.getCentroidY(label) * 1e6);
+	}
+
+	/**
+	 * Sort a copy of a list
+	 *
+	 * @param list
+	 * @return the sorted copy
+	 */
+	private static ArrayList<String> sorted(ArrayList<String> list) {
+		ArrayList<String> copy = new ArrayList<>(list);
+		Collections.sort(copy);
+		return copy;
+	}
+
+	/**
+	 * Random byte mask
+	 *
+	 * @param wid
+	 * @param hei
+	 * @param density
+	 *            percentage of foreground pixels
+	 * @return row-major mask
+	 */
+	private byte[] randomMask(int wid, int hei, int density) {
+		byte[] mask = new byte[wid * hei];
+		for (int i = 0; i < mask.length; i++)
+			mask[i] = (byte) (random.nextInt(100) < density ? 1 : 0);
+		return mask;
+	}
+}
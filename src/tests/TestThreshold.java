@@ -0,0 +1,188 @@
+package tests;
+
+import static org.junit.Assert.*;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.util.Random;
+
+import javax.imageio.ImageIO;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import imageprocessing.Binarizer;
+import imageprocessing.ConnectedComponentImage;
+import imageprocessing.FixedThreshold;
+import imageprocessing.LocalThreshold;
+import imageprocessing.LocalThreshold.Method;
+import imageprocessing.OtsuThreshold;
+import imageprocessing.TwoPassLabeler;
+
+public class TestThreshold {
+
+	static final int WID = 200, HEI = 60;
+
+	File unevenlyLit;
+
+	@Before
+	public void setUp() throws Exception {
+		unevenlyLit = File.createTempFile("unevenlyLit", ".png");
+		ImageIO.write(unevenlyLit(), "png", unevenlyLit);
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		unevenlyLit.delete();
+		unevenlyLit = null;
+	}
+
+	/**
+	 * C.O.R.R.E.C.T => Conformance
+	 * Test if the int mode constructors are a fixed threshold at 128
+	 */
+	@Test
+	public void testModeIsFixedThreshold() {
+		try {
+			for (int mode = 0; mode < 2; mode++) {
+				ConnectedComponentImage image = new ConnectedComponentImage("images/crosses.gif", mode);
+				assertTrue(image.getThreshold() instanceof FixedThreshold);
+				assertEquals(128, ((FixedThreshold) image.getThreshold()).getLevel());
+				assertEquals(mode == 1, image.getThreshold().isDarkForeground());
+				ConnectedComponentImage same = new ConnectedComponentImage("images/crosses.gif",
+						new FixedThreshold(128, mode == 1));
+				assertEquals(mode, same.getMode());
+				assertEquals(image.countComponents(), same.countComponents());
+			}
+		} catch (Exception e) {
+			e.printStackTrace();
+			fail("Exception thrown");
+		}
+	}
+
+	/**
+	 * RIGHT B.I.C.E.P => Right, B
+	 * Test if Otsu splits a two peak histogram between the peaks and keeps
+	 * 128 when there is nothing to split
+	 */
+	@Test
+	public void testOtsuLevel() {
+		int[] histogram = new int[256];
+		histogram[40] = 500;
+		histogram[45] = 300;
+		histogram[200] = 400;
+		histogram[210] = 100;
+		int level = OtsuThreshold.level(histogram);
+		assertTrue(level > 45 && level <= 200);
+
+		histogram = new int[256];
+		histogram[77] = 1000;
+		assertEquals(128, OtsuThreshold.level(histogram));
+		assertEquals(128, OtsuThreshold.level(new int[256]));
+	}
+
+	/**
+	 * RIGHT B.I.C.E.P => Right
+	 * Test if Otsu finds the dark objects of a dim picture that the fixed
+	 * threshold misses
+	 */
+	@Test
+	public void testOtsuDimPicture() {
+		int[] rgb = new int[WID * HEI];
+		for (int i = 0; i < rgb.length; i++)
+			rgb[i] = gray(i % WID < WID / 2 ? 20 : 90);
+		int level = OtsuThreshold.level(OtsuThreshold.histogram(rgb));
+		assertTrue(level > 20 && level <= 90);
+		byte[] mask = Binarizer.binarize(rgb, level, true);
+		for (int i = 0; i < rgb.length; i++)
+			assertEquals(i % WID < WID / 2, mask[i] == 1);
+
+		// the packed mask of the threshold is the same
+		BufferedImage image = new BufferedImage(WID, HEI, BufferedImage.TYPE_INT_RGB);
+		image.setRGB(0, 0, WID, HEI, rgb, 0, WID);
+		OtsuThreshold otsu = new OtsuThreshold(true);
+		assertArrayEquals(otsu.binarize(image), otsu.binarizeBits(image).toBytes());
+		assertArrayEquals(mask, otsu.binarizeBits(image).toBytes());
+	}
+
+	/**
+	 * RIGHT B.I.C.E.P => Right, P
+	 * Test if the local mean of a pixel read from the summed-area tables is
+	 * the mean of its window, by comparing with a direct sum
+	 */
+	@Test
+	public void testLocalMeanMatchesWindow() {
+		Random random = new Random(12);
+		int wid = 31, hei = 19, window = 7;
+		int[] rgb = new int[wid * hei];
+		for (int i = 0; i < rgb.length; i++)
+			rgb[i] = 0xFF000000 | random.nextInt(1 << 24);
+		byte[] mask = new LocalThreshold(Method.MEAN, window, 0, true).binarize(rgb, wid, hei);
+		for (int y = 0; y < hei; y++) {
+			for (int x = 0; x < wid; x++) {
+				long sum = 0;
+				int n = 0;
+				for (int v = Math.max(y - window / 2, 0); v <= Math.min(y + window / 2, hei - 1); v++) {
+					for (int u = Math.max(x - window / 2, 0); u <= Math.min(x + window / 2, wid - 1); u++) {
+						sum += Binarizer.luma(rgb[v * wid + u]);
+						n++;
+					}
+				}
+				assertEquals(Binarizer.luma(rgb[y * wid + x]) < (double) sum / n, mask[y * wid + x] == 1);
+			}
+		}
+	}
+
+	/**
+	 * RIGHT B.I.C.E.P => Right
+	 * Test if the local thresholds find the five dark squares of an unevenly
+	 * lit picture, where the fixed threshold and Otsu merge the dim side
+	 * into one object
+	 */
+	@Test
+	public void testUnevenLighting() {
+		try {
+			String file = unevenlyLit.getPath();
+			assertNotEquals(5, new ConnectedComponentImage(file, 1).countComponents());
+			assertNotEquals(5, new ConnectedComponentImage(file, new OtsuThreshold(true)).countComponents());
+			for (Method method : Method.values()) {
+				ConnectedComponentImage local = new ConnectedComponentImage(file,
+						new LocalThreshold(method, 31, true), new TwoPassLabeler(), true);
+				assertEquals(method.toString(), 5, local.countComponents());
+				assertEquals(1, local.getMode());
+			}
+		} catch (Exception e) {
+			e.printStackTrace();
+			fail("Exception thrown");
+		}
+	}
+
+	/**
+	 * A background lit from 60 on the left to 250 on the right, with five
+	 * squares that reflect half of the light around them
+	 *
+	 * @return the picture
+	 */
+	private static BufferedImage unevenlyLit() {
+		BufferedImage image = new BufferedImage(WID, HEI, BufferedImage.TYPE_INT_RGB);
+		for (int y = 0; y < HEI; y++) {
+			for (int x = 0; x < WID; x++) {
+				int light = 60 + 190 * x / (WID - 1);
+				boolean square = y >= 20 && y < 40 && x % 40 >= 10 && x % 40 < 30;
+				image.setRGB(x, y, gray(square ? light / 2 : light));
+			}
+		}
+		return image;
+	}
+
+	/**
+	 * Pack a gray level
+	 *
+	 * @param level
+	 * @return packed RGB value
+	 */
+	private static int gray(int level) {
+		return 0xFF000000 | level << 16 | level << 8 | level;
+	}
+}
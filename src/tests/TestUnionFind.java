@@ -0,0 +1,277 @@
+package tests;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import imageprocessing.ConcurrentUnionFind;
+import imageprocessing.GrowableUnionFind;
+import imageprocessing.UnionFind;
+import imageprocessing.WeightedUnionFind;
+
+public class TestUnionFind {
+
+	static final int THREADS = 8;
+
+	WeightedUnionFind uf;
+	ExecutorService service;
+
+	@Before
+	public void setUp() throws Exception {
+		uf = new WeightedUnionFind(2);
+		service = Executors.newFixedThreadPool(THREADS);
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		uf = null;
+		service.shutdownNow();
+	}
+
+	/**
+	 * C.O.R.R.E.C.T => existence, ordering
+	 * RIGHT B.I.C.E.P => Right, B
+	 * Test if new elements start from 1 and are their own root
+	 */
+	@Test
+	public void testMakeSet() {
+		for (int i = 1; i <= 5; i++) {
+			assertEquals(uf.makeSet(), i);
+			assertEquals(uf.find(i), i);
+		}
+		assertEquals(uf.count(), 5);
+	}
+
+	/**
+	 * C.O.R.R.E.C.T => Compatibility
+	 * RIGHT B.I.C.E.P => E
+	 * Test if a union-find written before GrowableUnionFind still works
+	 * with the methods of UnionFind alone
+	 */
+	@Test
+	public void testOlderImplementation() {
+		int[] parent = new int[] { 0, 1, 1, 2 };
+		UnionFind fixed = new UnionFind() {
+			@Override
+			public void union(int p, int q) {
+				parent[findRootR(p, 1)[0]] = findRootR(q, 1)[0];
+			}
+
+			@Override
+			public int[] findRootR(int p, int depth) {
+				return parent[p] == p ? new int[] { p, depth } : findRootR(parent[p], depth + 1);
+			}
+
+			@Override
+			public boolean connected(int p, int q) {
+				return findRootR(p, 1)[0] == findRootR(q, 1)[0];
+			}
+		};
+		assertArrayEquals(new int[] { 1, 3 }, fixed.findRootR(3, 1));
+		assertTrue(fixed.connected(2, 3));
+		assertFalse(fixed.connected(0, 3));
+		fixed.union(0, 3);
+		assertTrue(fixed.connected(0, 2));
+	}
+
+	/**
+	 * C.O.R.R.E.C.T => cardinality
+	 * RIGHT B.I.C.E.P => Right
+	 * Test if union joins components and is not counted twice
+	 */
+	@Test
+	public void testUnion() {
+		for (int i = 0; i < 6; i++)
+			uf.makeSet();
+		uf.union(1, 2);
+		uf.union(3, 4);
+		uf.union(2, 1);
+		assertEquals(uf.count(), 4);
+		assertTrue(uf.connected(1, 2));
+		assertFalse(uf.connected(2, 3));
+		uf.union(4, 1);
+		assertTrue(uf.connected(2, 3));
+		assertEquals(uf.find(3), uf.find(2));
+		assertEquals(uf.findRootR(3, 1)[0], uf.find(1));
+		assertEquals(uf.count(), 3);
+	}
+
+	/**
+	 * Type: C.O.R.R.E.C.T => Time
+	 * RIGHT B.I.C.E.P => P
+	 * Test if a long chain of unions stays shallow and does not overflow the
+	 * stack
+	 */
+	@Test
+	public void testLongChain() {
+		int n = 1000000;
+		for (int i = 0; i < n; i++)
+			uf.makeSet();
+		for (int i = 1; i < n; i++)
+			uf.union(i + 1, i);
+		assertEquals(uf.count(), 1);
+		assertTrue(uf.connected(1, n));
+		assertTrue(uf.findRootR(n, 1)[1] <= 2);
+	}
+
+	/**
+	 * C.O.R.R.E.C.T => existence, cardinality
+	 * RIGHT B.I.C.E.P => Right, P
+	 * Test if threads making sets at the same time get distinct elements
+	 */
+	@Test
+	public void testConcurrentMakeSet() throws Exception {
+		int perThread = 20000;
+		ConcurrentUnionFind cuf = new ConcurrentUnionFind(THREADS * perThread + 1);
+		List<Future<int[]>> results = runAll(t -> {
+			int[] made = new int[perThread];
+			for (int i = 0; i < perThread; i++)
+				made[i] = cuf.makeSet();
+			return made;
+		});
+
+		boolean[] seen = new boolean[THREADS * perThread + 1];
+		for (Future<int[]> f : results) {
+			for (int p : f.get()) {
+				assertFalse("Element handed out twice", seen[p]);
+				seen[p] = true;
+				assertEquals(cuf.find(p), p);
+			}
+		}
+		assertFalse(seen[0]);
+		try {
+			cuf.makeSet();
+			fail("Should have thrown Exception");
+		} catch (IllegalStateException e) {
+			assertTrue(true);
+		}
+	}
+
+	/**
+	 * C.O.R.R.E.C.T => cardinality, time
+	 * RIGHT B.I.C.E.P => Right, C, P
+	 * Stress test: threads union random pairs at the same time, the
+	 * partition must be the one the sequential version gives for the same
+	 * pairs
+	 */
+	@Test
+	public void testConcurrentUnionStress() throws Exception {
+		int n = 100000;
+		int pairsPerThread = 40000;
+		for (int round = 0; round < 5; round++) {
+			Random random = new Random(round);
+			int[][] pairs = new int[THREADS][2 * pairsPerThread];
+			for (int[] threadPairs : pairs) {
+				for (int i = 0; i < threadPairs.length; i++)
+					threadPairs[i] = 1 + random.nextInt(n);
+			}
+
+			ConcurrentUnionFind cuf = new ConcurrentUnionFind(n + 1);
+			WeightedUnionFind wuf = new WeightedUnionFind(n + 1);
+			for (int i = 0; i < n; i++) {
+				cuf.makeSet();
+				wuf.makeSet();
+			}
+			for (int[] threadPairs : pairs) {
+				for (int i = 0; i < threadPairs.length; i += 2)
+					wuf.union(threadPairs[i], threadPairs[i + 1]);
+			}
+
+			List<Future<int[]>> results = runAll(t -> {
+				int[] threadPairs = pairs[t];
+				for (int i = 0; i < threadPairs.length; i += 2) {
+					cuf.union(threadPairs[i], threadPairs[i + 1]);
+					assertTrue(cuf.connected(threadPairs[i], threadPairs[i + 1]));
+				}
+				return threadPairs;
+			});
+			for (Future<int[]> f : results)
+				f.get();
+			assertSamePartition(cuf, wuf, n);
+		}
+	}
+
+	/**
+	 * RIGHT B.I.C.E.P => Right, C
+	 * Test if a chain unioned from both ends by many threads ends up as one
+	 * component rooted at its smallest element
+	 */
+	@Test
+	public void testConcurrentChain() throws Exception {
+		int n = 200000;
+		ConcurrentUnionFind cuf = new ConcurrentUnionFind(n + 1);
+		for (int i = 0; i < n; i++)
+			cuf.makeSet();
+		List<Future<int[]>> results = runAll(t -> {
+			for (int i = 1 + t; i < n; i += THREADS) {
+				if (t % 2 == 0)
+					cuf.union(i, i + 1);
+				else
+					cuf.union(n - i + 1, n - i);
+			}
+			return null;
+		});
+		for (Future<int[]> f : results)
+			f.get();
+		for (int i = 1; i <= n; i++)
+			assertEquals(cuf.find(i), 1);
+	}
+
+	/**
+	 * Functional interface for the work of one thread
+	 */
+	interface ThreadTask {
+		int[] run(int thread) throws Exception;
+	}
+
+	/**
+	 * Run one task per thread, all released at the same time
+	 * 
+	 * @param task
+	 *            the task, given the index of its thread
+	 * @return the results of the threads
+	 */
+	List<Future<int[]>> runAll(ThreadTask task) {
+		CountDownLatch start = new CountDownLatch(1);
+		List<Future<int[]>> results = new ArrayList<>();
+		for (int t = 0; t < THREADS; t++) {
+			final int thread = t;
+			results.add(service.submit((Callable<int[]>) () -> {
+				start.await();
+				return task.run(thread);
+			}));
+		}
+		start.countDown();
+		return results;
+	}
+
+	/**
+	 * Assert that two union-finds hold the same partition of elements 1 to n
+	 * 
+	 * @param a
+	 *            first union-find
+	 * @param b
+	 *            second union-find
+	 * @param n
+	 *            number of elements
+	 */
+	static void assertSamePartition(GrowableUnionFind a, GrowableUnionFind b, int n) {
+		for (int p = 1; p <= n; p++) {
+			int rootA = a.find(p);
+			int rootB = b.find(p);
+			assertEquals(a.find(rootB), rootA);
+			assertEquals(b.find(rootA), rootB);
+		}
+	}
+}